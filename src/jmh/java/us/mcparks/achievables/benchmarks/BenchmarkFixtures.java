@@ -0,0 +1,155 @@
+package us.mcparks.achievables.benchmarks;
+
+import us.mcparks.achievables.Achievables;
+import us.mcparks.achievables.InMemoryAchievableManager;
+import us.mcparks.achievables.dsl.meta.AchievableMeta;
+import us.mcparks.achievables.dsl.meta.MetaBuilder;
+import us.mcparks.achievables.framework.AchievablePlayer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The players, events and achievement files the benchmarks run against, backed by an {@link InMemoryAchievableManager}
+ * that doesn't persist anything.
+ */
+public final class BenchmarkFixtures {
+    // The example from the README
+    public static final String MOUNTAINEER = String.join("\n",
+            "achievement {",
+            "    syntaxVersion 0",
+            "    name \"Magic Kingdom Mountaineer\"",
+            "    description \"Ride the three mountains of Magic Kingdom without warping or teleporting\"",
+            "    icon \"IRON_SPADE:20\"",
+            "    reward \"MONEY:500\"",
+            "",
+            "    state {",
+            "        rodeSpaceMountain = false",
+            "        rodeBigThunderMountain = false",
+            "        rodeSplashMountain = false",
+            "        warpedOrTeleported = false",
+            "    }",
+            "",
+            "    activators {",
+            "        (state.rodeSpaceMountain == true) && (state.rodeSplashMountain == true) && (state.rodeBigThunderMountain == true)",
+            "    }",
+            "",
+            "    deactivators {",
+            "        state.warpedOrTeleported == true",
+            "    }",
+            "",
+            "    events {",
+            "        on(\"CompleteRideEvent\") {",
+            "            if (event.rideId == 32) {",
+            "                state.rodeSpaceMountain = true",
+            "            }",
+            "            if (event.rideId == 7) {",
+            "                state.rodeBigThunderMountain = true",
+            "            }",
+            "            if (event.rideId == 9) {",
+            "                state.rodeSplashMountain = true",
+            "            }",
+            "        }",
+            "        on(\"PlayerWarpEvent\") {",
+            "            state.warpedOrTeleported = true",
+            "        }",
+            "    }",
+            "}");
+
+    // Reacts to a global event, with both player and shared state; the goal is out of reach of any benchmark run
+    public static final String SHOWGOER = String.join("\n",
+            "achievement {",
+            "    syntaxVersion 0",
+            "    name \"Showgoer\"",
+            "    description \"Watch a billion fireworks shows\"",
+            "",
+            "    state {",
+            "        showsSeen = 0",
+            "    }",
+            "",
+            "    shared {",
+            "        showsRun = 0",
+            "    }",
+            "",
+            "    activators {",
+            "        state.showsSeen >= 1000000000 && shared.showsRun > 0",
+            "    }",
+            "",
+            "    events {",
+            "        on(\"FireworksShowEvent\") {",
+            "            state.showsSeen += 1",
+            "        }",
+            "        on(\"FireworksShowEvent\", shared: true) {",
+            "            shared.showsRun += 1",
+            "        }",
+            "    }",
+            "}");
+
+    private BenchmarkFixtures() {
+    }
+
+    // Sets up Achievables with a fresh manager that has the given number of players online
+    public static InMemoryAchievableManager initialize(int playerCount) throws ExecutionException {
+        InMemoryAchievableManager manager = InMemoryAchievableManager.builder(AchievablePlayer::toString)
+                .eventClass(CompleteRideEvent.class)
+                .eventClass(PlayerWarpEvent.class)
+                .eventClass(FireworksShowEvent.class)
+                .build();
+        Achievables.initialize(manager);
+        Achievables.getInstance().setAchievableMetaBuilderSupplier(BenchmarkMetaBuilder::new);
+        for (AchievablePlayer player : players(playerCount)) {
+            manager.playerJoined(player);
+        }
+        return manager;
+    }
+
+    public static List<AchievablePlayer> players(int count) {
+        List<AchievablePlayer> players = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            players.add(new BenchmarkPlayer("player-" + i));
+        }
+        return players;
+    }
+
+    public static class BenchmarkPlayer implements AchievablePlayer {
+        private final String name;
+
+        public BenchmarkPlayer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static class BenchmarkMeta implements AchievableMeta {
+        String name;
+        String description;
+    }
+
+    public static class BenchmarkMetaBuilder implements MetaBuilder<BenchmarkMeta> {
+        private final BenchmarkMeta meta = new BenchmarkMeta();
+
+        public void name(String name) {
+            meta.name = name;
+        }
+
+        public void description(String description) {
+            meta.description = description;
+        }
+
+        public void icon(String icon) {
+        }
+
+        public void reward(String reward) {
+        }
+
+        @Override
+        public BenchmarkMeta build() {
+            return meta;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package us.mcparks.achievables.benchmarks;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import us.mcparks.achievables.events.Event;
+import us.mcparks.achievables.events.PlayerEvent;
+import us.mcparks.achievables.framework.AchievablePlayer;
+
+@AllArgsConstructor
+public class CompleteRideEvent implements Event, PlayerEvent {
+    private final AchievablePlayer player;
+    @Getter
+    private final int rideId;
+
+    @Override
+    public AchievablePlayer getApplicablePlayer() {
+        return player;
+    }
+}
@@ -0,0 +1,100 @@
+package us.mcparks.achievables.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import us.mcparks.achievables.InMemoryAchievableManager;
+import us.mcparks.achievables.dsl.BigalsIntegratedGroovyAchievementLanguage;
+import us.mcparks.achievables.framework.AchievablePlayer;
+import us.mcparks.achievables.groovy.BigAlAchievable;
+import us.mcparks.achievables.simple.EventScript;
+import us.mcparks.achievables.simple.SimpleStateAchievable;
+import us.mcparks.achievables.triggers.EventAchievableTrigger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluating a single achievable for a single player: the activator and deactivator checks that run after every
+ * handled event, and a whole event for a {@link SimpleStateAchievable}, whose scripts are strings evaluated at runtime.
+ *
+ * The player's state never changes, so bigAlIsSatisfied and bigAlIsDisqualified reuse the results the achievable cached
+ * for it. The uncached variants store a copy of the state first, which counts as a change, so the closures run each time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EvaluationBenchmark {
+    private InMemoryAchievableManager manager;
+    private AchievablePlayer player;
+    private BigAlAchievable bigAl;
+    private Map<String, Object> bigAlState;
+    private SimpleStateAchievable simple;
+    private EventAchievableTrigger ride;
+
+    @Setup
+    public void setUp() throws Exception {
+        manager = BenchmarkFixtures.initialize(1);
+        player = manager.getCurrentPlayers().iterator().next();
+
+        bigAl = (BigAlAchievable) BigalsIntegratedGroovyAchievementLanguage.interpret(BenchmarkFixtures.MOUNTAINEER).getAchievable();
+        simple = SimpleStateAchievable.builder()
+                .addState("rides", 0)
+                .addState("warped", false)
+                .addSatisfiedScript("{ -> state.rides >= 1000 }")
+                .addDisqualifiedScript("{ -> state.warped }")
+                .addEventScript(EventScript.of(CompleteRideEvent.class, "{ -> state.rides += 1 }"))
+                .build();
+        manager.registerAchievable(bigAl);
+        manager.registerAchievable(simple);
+        // two of the three mountains, so the activators check every ride before failing
+        bigAlState = new HashMap<>(bigAl.getInitialPlayerState());
+        bigAlState.put("rodeSpaceMountain", true);
+        bigAlState.put("rodeBigThunderMountain", true);
+        manager.setPlayerState(player, bigAl, new HashMap<>(bigAlState), false);
+        ride = new EventAchievableTrigger(new CompleteRideEvent(player, 32));
+    }
+
+    @Benchmark
+    public boolean bigAlIsSatisfied() {
+        return bigAl.isSatisfied(player);
+    }
+
+    @Benchmark
+    public boolean bigAlIsDisqualified() {
+        return bigAl.isDisqualified(player);
+    }
+
+    @Benchmark
+    public boolean bigAlIsSatisfiedUncached() throws ExecutionException {
+        manager.setPlayerState(player, bigAl, new HashMap<>(bigAlState), false);
+        return bigAl.isSatisfied(player);
+    }
+
+    @Benchmark
+    public boolean bigAlIsDisqualifiedUncached() throws ExecutionException {
+        manager.setPlayerState(player, bigAl, new HashMap<>(bigAlState), false);
+        return bigAl.isDisqualified(player);
+    }
+
+    @Benchmark
+    public boolean simpleIsSatisfied() {
+        return simple.isSatisfied(player);
+    }
+
+    @Benchmark
+    public boolean simpleIsDisqualified() {
+        return simple.isDisqualified(player);
+    }
+
+    @Benchmark
+    public void simpleProcess() {
+        simple.process(player, ride, true);
+    }
+}
@@ -0,0 +1,7 @@
+package us.mcparks.achievables.benchmarks;
+
+import us.mcparks.achievables.events.Event;
+
+// Not a PlayerEvent, so it applies to every online player
+public class FireworksShowEvent implements Event {
+}
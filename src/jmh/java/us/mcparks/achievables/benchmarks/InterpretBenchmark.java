@@ -0,0 +1,43 @@
+package us.mcparks.achievables.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import us.mcparks.achievables.dsl.BigalsIntegratedGroovyAchievementLanguage;
+import us.mcparks.achievables.dsl.meta.AchievableWithMeta;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading an achievement file. When {@code cached} is false every iteration gets a source the script cache hasn't seen,
+ * so it measures parsing and compiling; otherwise it measures building the achievable from an already compiled script.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InterpretBenchmark {
+    @Param({"true", "false"})
+    boolean cached;
+
+    @Param({"mountaineer", "showgoer"})
+    String achievement;
+
+    private String source;
+    private long counter;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkFixtures.initialize(1);
+        source = achievement.equals("mountaineer") ? BenchmarkFixtures.MOUNTAINEER : BenchmarkFixtures.SHOWGOER;
+    }
+
+    @Benchmark
+    public AchievableWithMeta interpret() {
+        return BigalsIntegratedGroovyAchievementLanguage.interpret(cached ? source : source + "\n// " + counter++);
+    }
+}
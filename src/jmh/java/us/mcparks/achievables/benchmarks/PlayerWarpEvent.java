@@ -0,0 +1,16 @@
+package us.mcparks.achievables.benchmarks;
+
+import lombok.AllArgsConstructor;
+import us.mcparks.achievables.events.Event;
+import us.mcparks.achievables.events.PlayerEvent;
+import us.mcparks.achievables.framework.AchievablePlayer;
+
+@AllArgsConstructor
+public class PlayerWarpEvent implements Event, PlayerEvent {
+    private final AchievablePlayer player;
+
+    @Override
+    public AchievablePlayer getApplicablePlayer() {
+        return player;
+    }
+}
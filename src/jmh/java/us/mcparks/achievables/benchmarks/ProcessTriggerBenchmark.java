@@ -0,0 +1,73 @@
+package us.mcparks.achievables.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import us.mcparks.achievables.InMemoryAchievableManager;
+import us.mcparks.achievables.dsl.BigalsIntegratedGroovyAchievementLanguage;
+import us.mcparks.achievables.framework.AchievablePlayer;
+import us.mcparks.achievables.triggers.EventAchievableTrigger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routing and processing a trigger, with N players online and M copies of each achievement registered.
+ *
+ * A ride event only concerns one player, so it should cost about the same however many players there are; a fireworks
+ * show concerns every player, and runs each copy's shared handler once. No player ever completes an achievement, so
+ * every event runs the handlers and checks the activators and deactivators instead of taking the completed path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProcessTriggerBenchmark {
+    @Param({"10", "100", "1000"})
+    int players;
+
+    @Param({"1", "10"})
+    int achievables;
+
+    private InMemoryAchievableManager manager;
+    private List<AchievablePlayer> onlinePlayers;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        manager = BenchmarkFixtures.initialize(players);
+        onlinePlayers = new ArrayList<>(manager.getCurrentPlayers());
+        for (int i = 0; i < achievables; i++) {
+            manager.registerAchievable(BigalsIntegratedGroovyAchievementLanguage.interpret(BenchmarkFixtures.MOUNTAINEER, UUID.randomUUID()).getAchievable());
+            manager.registerAchievable(BigalsIntegratedGroovyAchievementLanguage.interpret(BenchmarkFixtures.SHOWGOER, UUID.randomUUID()).getAchievable());
+        }
+    }
+
+    // Each player rides two of the three mountains and then warps, which resets them, so they never complete Mountaineer
+    @Benchmark
+    public void playerEvent() {
+        int i = next++;
+        AchievablePlayer player = onlinePlayers.get(i % onlinePlayers.size());
+        switch ((i / onlinePlayers.size()) % 3) {
+            case 0:
+                manager.processTrigger(new EventAchievableTrigger(new CompleteRideEvent(player, 32)));
+                break;
+            case 1:
+                manager.processTrigger(new EventAchievableTrigger(new CompleteRideEvent(player, 7)));
+                break;
+            default:
+                manager.processTrigger(new EventAchievableTrigger(new PlayerWarpEvent(player)));
+        }
+    }
+
+    @Benchmark
+    public void globalEvent() {
+        manager.processTrigger(new EventAchievableTrigger(new FireworksShowEvent()));
+    }
+}
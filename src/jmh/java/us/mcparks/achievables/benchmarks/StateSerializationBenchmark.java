@@ -0,0 +1,77 @@
+package us.mcparks.achievables.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import us.mcparks.achievables.AchievableManager;
+import us.mcparks.achievables.persistence.BinaryStateCodec;
+import us.mcparks.achievables.persistence.JsonStateCodec;
+import us.mcparks.achievables.utils.AchievableGsonManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a player's state and reading it back, with Gson as the managers do and with each {@code StateCodec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StateSerializationBenchmark {
+    private final UUID achievable = UUID.randomUUID();
+    private final BinaryStateCodec binaryCodec = new BinaryStateCodec();
+    private Map<String, Object> state;
+    private String json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        // about what a mid-sized achievement keeps per player
+        state = new HashMap<>();
+        state.put("rodeSpaceMountain", true);
+        state.put("rodeBigThunderMountain", false);
+        state.put("rodeSplashMountain", true);
+        state.put("warpedOrTeleported", false);
+        state.put("showsSeen", 412L);
+        state.put("lastRide", "Space Mountain");
+        state.put("bestTime", 97.5);
+        state.put("ridesToday", Arrays.asList(32L, 7L, 32L));
+        json = AchievableGsonManager.getGson().toJson(state);
+        binary = binaryCodec.encode(achievable, state);
+    }
+
+    @Benchmark
+    public String gsonToJson() {
+        return AchievableGsonManager.getGson().toJson(state);
+    }
+
+    @Benchmark
+    public Map<String, Object> gsonFromJson() {
+        return AchievableGsonManager.getGson().fromJson(json, AchievableManager.achievableStateMapType);
+    }
+
+    @Benchmark
+    public Map<String, Object> jsonCodecRoundTrip() throws IOException {
+        byte[] bytes = JsonStateCodec.INSTANCE.encode(achievable, state);
+        return JsonStateCodec.INSTANCE.decode(achievable, ByteBuffer.wrap(bytes));
+    }
+
+    @Benchmark
+    public byte[] binaryCodecEncode() throws IOException {
+        return binaryCodec.encode(achievable, state);
+    }
+
+    @Benchmark
+    public Map<String, Object> binaryCodecDecode() throws IOException {
+        return binaryCodec.decode(achievable, ByteBuffer.wrap(binary));
+    }
+}
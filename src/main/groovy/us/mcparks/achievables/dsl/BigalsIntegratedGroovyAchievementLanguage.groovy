@@ -2,15 +2,23 @@ package us.mcparks.achievables.dsl
 
 
 import org.codehaus.groovy.control.CompilerConfiguration
+import org.codehaus.groovy.control.customizers.CompilationCustomizer
 import org.codehaus.groovy.control.customizers.ImportCustomizer
 import us.mcparks.achievables.dsl.meta.AchievableWithMeta
 import us.mcparks.achievables.dsl.meta.MetaBuilder
 import us.mcparks.achievables.groovy.BigAlAchievable
 import us.mcparks.achievables.dsl.v1_0.AchievementDslV0
+import us.mcparks.achievables.dsl.v1_0.ExecutionBudgetCustomizer
+import us.mcparks.achievables.dsl.v1_0.StateReadsCustomizer
+import us.mcparks.achievables.dsl.v1_0.StaticCompilationCustomizer
+import us.mcparks.achievables.utils.CompiledScriptStore
 import us.mcparks.achievables.utils.GroovyEvaluator
 import us.mcparks.achievables.utils.GroovyScriptCachingBuilder
 
+import java.nio.file.Path
 import java.util.function.Supplier
+import java.util.regex.Matcher
+import java.util.regex.Pattern
 
 
 /**
@@ -95,19 +103,60 @@ The DSL allows for the user to write helper methods to more concisely express th
  */
 
 public final class BigalsIntegratedGroovyAchievementLanguage {
-    static GroovyEvaluator bigalEvaluator = createEvaluator("${AchievementDslV0.class.getName()}")
+    // what each evaluator's compiled scripts depend on besides their source, for the CompiledScriptStore
+    private static final Map<GroovyEvaluator, String> fingerprints = Collections.synchronizedMap(new IdentityHashMap<>())
+
+    // scripts that opt into compileStatic get their closures statically compiled while they're parsed, and every script
+    // counts its steps against the ExecutionBudget
+    static GroovyEvaluator bigalEvaluator = createEvaluator([new StateReadsCustomizer(), new StaticCompilationCustomizer(), new ExecutionBudgetCustomizer()] as List<CompilationCustomizer>, "${AchievementDslV0.class.getName()}")
     static GroovyEvaluator versionEvaluator = createEvaluator("${VersionDsl.class.getName()}")
 
     static Supplier<MetaBuilder<?>> metaBuilderSupplier = MetaBuilder::new
 
+    // e.g. "syntaxVersion 0" or "syntaxVersion(0)"
+    private static final Pattern SYNTAX_VERSION_LINE = Pattern.compile('(?m)^[ \\t]*syntaxVersion[ \\t]*\\(?[ \\t]*(\\d+)[ \\t]*\\)?[ \\t]*;?[ \\t]*$')
+
     static GroovyEvaluator createEvaluator(String... classNames) {
+        return createEvaluator([], classNames)
+    }
+
+    static GroovyEvaluator createEvaluator(List<CompilationCustomizer> customizers, String... classNames) {
         def importCustomizer = new ImportCustomizer()
         for (String className : classNames) {
             importCustomizer.addStaticStars(className)
         }
         def configuration = new CompilerConfiguration()
         configuration.addCompilationCustomizers(importCustomizer)
-        return new GroovyEvaluator(new GroovyScriptCachingBuilder(new GroovyShell(configuration)))
+        configuration.addCompilationCustomizers(customizers as CompilationCustomizer[])
+        def evaluator = new GroovyEvaluator(new GroovyScriptCachingBuilder(configuration))
+        fingerprints.put(evaluator, "imports=${classNames.join(',')};customizers=${customizers*.getClass()*.getName().join(',')};target=${configuration.getTargetBytecode()}".toString())
+        return evaluator
+    }
+
+    /**
+     * Keeps compiled achievement scripts in the given directory, so they're loaded from there instead of being compiled
+     * again after a restart. Returns the stores, for {@link CompiledScriptStore#deleteUnused()} once everything's loaded.
+     */
+    static List<CompiledScriptStore> setCompiledScriptCache(Path directory) throws IOException {
+        List<CompiledScriptStore> stores = []
+        for (GroovyEvaluator evaluator : [bigalEvaluator, versionEvaluator]) {
+            def store = new CompiledScriptStore(directory, fingerprints.get(evaluator))
+            evaluator.getGroovyScriptCachingBuilder().setStore(store)
+            stores.add(store)
+        }
+        return stores
+    }
+
+    /**
+     * Lets go of the compiled classes of an achievement that's been replaced or removed, once nothing uses it anymore,
+     * and compiles whatever's interpreted next into a fresh class loader.
+     */
+    static void discard(Collection<String> achievementCodeAsStrings) {
+        for (GroovyEvaluator evaluator : [bigalEvaluator, versionEvaluator]) {
+            def builder = evaluator.getGroovyScriptCachingBuilder()
+            achievementCodeAsStrings.each { builder.discard(it) }
+            builder.newGeneration()
+        }
     }
 
     static AchievableWithMeta interpret(String achievementCodeAsString) {
@@ -116,10 +165,8 @@ public final class BigalsIntegratedGroovyAchievementLanguage {
 
     static AchievableWithMeta interpret(String achievementCodeAsString, UUID uuid) {
         // The string represents an achievement in the DSL, so we need to parse it and convert it to a Java object
-        // First, let's use the VersionDsl to determine which version of the DSL we're using
-
-        // Tell the GroovyShell about the VersionDsl
-        int version = versionEvaluator.evaluateExpression(achievementCodeAsString)
+        // First, determine which version of the DSL we're using
+        int version = syntaxVersionOf(achievementCodeAsString)
         if (version == 0) {
             //System.out.println("Using version 0")
             AchievableWithMeta achievement = bigalEvaluator.evaluateExpression(achievementCodeAsString)
@@ -134,6 +181,24 @@ public final class BigalsIntegratedGroovyAchievementLanguage {
         return null
     }
 
-}
-
+    /**
+     * The syntaxVersion of an achievement. When it's written out plainly on a line of its own, as it nearly always is,
+     * it's read straight from the source; otherwise the source is run through the VersionDsl to find out, which means
+     * compiling it an extra time.
+     */
+    static int syntaxVersionOf(String achievementCodeAsString) {
+        Matcher matcher = SYNTAX_VERSION_LINE.matcher(achievementCodeAsString)
+        if (matcher.find()) {
+            int version = Integer.parseInt(matcher.group(1))
+            boolean consistent = true
+            while (matcher.find()) {
+                consistent &= Integer.parseInt(matcher.group(1)) == version
+            }
+            if (consistent) {
+                return version
+            }
+        }
+        return versionEvaluator.evaluateExpression(achievementCodeAsString) as int
+    }
 
+}
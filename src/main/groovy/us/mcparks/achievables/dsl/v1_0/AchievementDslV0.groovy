@@ -8,8 +8,11 @@ import us.mcparks.achievables.dsl.meta.AchievableMeta
 import us.mcparks.achievables.dsl.meta.AchievableWithMeta
 import us.mcparks.achievables.dsl.meta.MetaBuilder
 import us.mcparks.achievables.events.Event
+import us.mcparks.achievables.framework.MergePolicy
 import us.mcparks.achievables.groovy.BigAlAchievable
 import us.mcparks.achievables.groovy.EventClosureScript
+import us.mcparks.achievables.groovy.StateReads
+import us.mcparks.achievables.triggers.EventPredicate
 
 @CompileStatic
 public class AchievementDslV0 {
@@ -31,6 +34,10 @@ public class AchievementDslV0 {
         assert syntaxVersion == SYNTAX_VERSION
     }
 
+    // compileStatic true is handled while the script compiles (see StaticCompilationCustomizer), nothing to do here
+    def compileStatic(boolean compileStatic) {
+    }
+
     @CompileDynamic
     def methodMissing(String name, args) {
         try {
@@ -61,6 +68,11 @@ public class AchievementDslV0 {
         closure.resolveStrategy = Closure.DELEGATE_FIRST
         closure.delegate = initialState
         closure()
+        (initialState as Map<String, Object>).each { String key, Object value ->
+            if (value instanceof MergeableValue) {
+                throw new IllegalArgumentException("state.${key}: ${value.policy.name().toLowerCase()} values are only for shared {}")
+            }
+        }
         achievableBuilder.withInitialState(initialState as Map<String, Object>)
     }
 
@@ -68,9 +80,37 @@ public class AchievementDslV0 {
         closure.resolveStrategy = Closure.DELEGATE_FIRST
         closure.delegate = initialStaticState
         closure()
+        for (Map.Entry<String, Object> entry : (initialStaticState as Map<String, Object>).entrySet()) {
+            if (entry.value instanceof MergeableValue) {
+                MergeableValue value = (MergeableValue) entry.value
+                achievableBuilder.withSharedMergePolicy(entry.key, value.policy)
+                entry.value = value.initial
+            }
+        }
         achievableBuilder.withInitialStaticState(initialStaticState as Map<String, Object>)
     }
 
+    // Initial values for shared {} whose writes from handlers running at once are combined instead of the last one winning
+    MergeableValue counter(Number initial = 0) {
+        new MergeableValue(MergePolicy.COUNTER, initial)
+    }
+
+    MergeableValue maximum(Object initial) {
+        new MergeableValue(MergePolicy.MAX, initial)
+    }
+
+    MergeableValue minimum(Object initial) {
+        new MergeableValue(MergePolicy.MIN, initial)
+    }
+
+    MergeableValue set(List initial = []) {
+        new MergeableValue(MergePolicy.SET, initial)
+    }
+
+    MergeableValue register(Object initial) {
+        new MergeableValue(MergePolicy.REGISTER, initial)
+    }
+
     def activators(Closure<Boolean> closure) {
         achievableBuilder.addSatisfiedScript(closure.dehydrate())
     }
@@ -79,6 +119,15 @@ public class AchievementDslV0 {
         achievableBuilder.addDisqualifiedScript(closure.dehydrate())
     }
 
+    // Added by the StateReadsCustomizer, with the keys the closure reads
+    def activators(List<String> reads, Closure<Boolean> closure) {
+        achievableBuilder.addSatisfiedScript(closure.dehydrate(), StateReads.of(reads))
+    }
+
+    def deactivators(List<String> reads, Closure<Boolean> closure) {
+        achievableBuilder.addDisqualifiedScript(closure.dehydrate(), StateReads.of(reads))
+    }
+
     def events(Closure closure) {
         EventsDsl eventsDsl = new EventsDsl()
         closure.delegate = eventsDsl
@@ -100,13 +149,24 @@ public class AchievementDslV0 {
             on(Collections.emptyMap(), eventName, closure)
         }
 
-        void on(Map<String,Boolean> optionalFlags, final String eventName, final Closure closure) {
+        // e.g. on("CompleteRideEvent", where: [rideId: 32]) { ... } only runs for rides with an id of 32
+        void on(Map<String,Object> optionalFlags, final String eventName, final Closure closure) {
             boolean shared = optionalFlags.get("shared") ?: false
             if (shared) {
                 System.out.println("Shared event: ${eventName}")
             }
-            achievableBuilder.addEventHandler(EventClosureScript.of(Achievables.getInstance().getAchievableManager().getEventClass(eventName) as Class<? extends Event>, closure.dehydrate(), shared))
+            EventPredicate where = EventPredicate.of(optionalFlags.get("where") as Map<String, ?>)
+            achievableBuilder.addEventHandler(EventClosureScript.of(Achievables.getInstance().getAchievableManager().getEventClass(eventName) as Class<? extends Event>, closure.dehydrate(), shared, where))
         }
     }
 
+    static class MergeableValue {
+        final MergePolicy policy
+        final Object initial
+
+        MergeableValue(MergePolicy policy, Object initial) {
+            this.policy = policy
+            this.initial = initial
+        }
+    }
 }
@@ -0,0 +1,90 @@
+package us.mcparks.achievables.dsl.v1_0
+
+import groovy.transform.CompileStatic
+import org.codehaus.groovy.ast.ClassCodeVisitorSupport
+import org.codehaus.groovy.ast.ClassHelper
+import org.codehaus.groovy.ast.ClassNode
+import org.codehaus.groovy.ast.MethodNode
+import org.codehaus.groovy.ast.expr.ArgumentListExpression
+import org.codehaus.groovy.ast.expr.ClosureExpression
+import org.codehaus.groovy.ast.expr.StaticMethodCallExpression
+import org.codehaus.groovy.ast.stmt.BlockStatement
+import org.codehaus.groovy.ast.stmt.DoWhileStatement
+import org.codehaus.groovy.ast.stmt.ExpressionStatement
+import org.codehaus.groovy.ast.stmt.ForStatement
+import org.codehaus.groovy.ast.stmt.Statement
+import org.codehaus.groovy.ast.stmt.WhileStatement
+import org.codehaus.groovy.classgen.GeneratorContext
+import org.codehaus.groovy.control.CompilePhase
+import org.codehaus.groovy.control.SourceUnit
+import org.codehaus.groovy.control.customizers.CompilationCustomizer
+import us.mcparks.achievables.groovy.ExecutionBudget
+
+/**
+ * Makes BIGAL scripts count their steps against the {@link ExecutionBudget}: a call to {@link ExecutionBudget#step()}
+ * goes at the start of every loop body, closure and method, which is enough to catch any script that never stops,
+ * including by recursion.
+ *
+ * Runs after the {@link StaticCompilationCustomizer}, so the methods it moves closures into are counted too.
+ */
+@CompileStatic
+class ExecutionBudgetCustomizer extends CompilationCustomizer {
+
+    ExecutionBudgetCustomizer() {
+        super(CompilePhase.CONVERSION)
+    }
+
+    @Override
+    void call(SourceUnit source, GeneratorContext context, ClassNode classNode) {
+        StepInjector injector = new StepInjector(source)
+        for (MethodNode method : classNode.methods) {
+            if (method.code == null) continue
+            // the body of a script only sets the achievement up, and isn't run while processing events
+            if (!(classNode.isScript() && method.name in ['run', 'main'])) {
+                method.code = withStep(method.code)
+            }
+            method.code.visit(injector)
+        }
+    }
+
+    private static Statement withStep(Statement code) {
+        Statement step = new ExpressionStatement(new StaticMethodCallExpression(ClassHelper.make(ExecutionBudget), 'step', ArgumentListExpression.EMPTY_ARGUMENTS))
+        if (code instanceof BlockStatement) {
+            ((BlockStatement) code).statements.add(0, step)
+            return code
+        }
+        return new BlockStatement([step, code], null)
+    }
+
+    private static class StepInjector extends ClassCodeVisitorSupport {
+        final SourceUnit sourceUnit
+
+        StepInjector(SourceUnit sourceUnit) {
+            this.sourceUnit = sourceUnit
+        }
+
+        @Override
+        void visitClosureExpression(ClosureExpression expression) {
+            expression.code = withStep(expression.code)
+            super.visitClosureExpression(expression)
+        }
+
+        @Override
+        void visitForLoop(ForStatement loop) {
+            loop.loopBlock = withStep(loop.loopBlock)
+            super.visitForLoop(loop)
+        }
+
+        @Override
+        void visitWhileLoop(WhileStatement loop) {
+            loop.loopBlock = withStep(loop.loopBlock)
+            super.visitWhileLoop(loop)
+        }
+
+        @Override
+        void visitDoWhileLoop(DoWhileStatement loop) {
+            loop.loopBlock = withStep(loop.loopBlock)
+            super.visitDoWhileLoop(loop)
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package us.mcparks.achievables.dsl.v1_0
+
+import groovy.transform.CompileStatic
+import org.codehaus.groovy.ast.ClassNode
+import org.codehaus.groovy.ast.CodeVisitorSupport
+import org.codehaus.groovy.ast.MethodNode
+import org.codehaus.groovy.ast.Parameter
+import org.codehaus.groovy.ast.expr.*
+import org.codehaus.groovy.ast.stmt.CatchStatement
+import org.codehaus.groovy.ast.stmt.ForStatement
+import org.codehaus.groovy.classgen.GeneratorContext
+import org.codehaus.groovy.control.CompilePhase
+import org.codehaus.groovy.control.SourceUnit
+import org.codehaus.groovy.control.customizers.CompilationCustomizer
+
+import static us.mcparks.achievables.dsl.v1_0.StaticCompilationCustomizer.arguments
+import static us.mcparks.achievables.dsl.v1_0.StaticCompilationCustomizer.blockCalls
+import static us.mcparks.achievables.dsl.v1_0.StaticCompilationCustomizer.lastClosure
+
+/**
+ * Works out which state and shared keys each {@code activators {}} and {@code deactivators {}} closure of a BIGAL script
+ * reads, and passes them to the DSL along with the closure ({@code activators(['state.rides'], { ... })}), so the
+ * achievable can reuse the closure's last result until one of them changes.
+ *
+ * Only closures whose result can't depend on anything else are tracked. One that uses the player, a variable from
+ * outside the closure, a class, or calls anything other than a method of a value (like {@code state.seen.size()}) or a
+ * pure {@code Math} method is left as it is, and runs every time. Runs before the {@link StaticCompilationCustomizer}, which moves the closures out.
+ */
+@CompileStatic
+class StateReadsCustomizer extends CompilationCustomizer {
+
+    StateReadsCustomizer() {
+        super(CompilePhase.CONVERSION)
+    }
+
+    @Override
+    void call(SourceUnit source, GeneratorContext context, ClassNode classNode) {
+        if (!classNode.isScript()) return
+        MethodNode run = classNode.getMethod('run', Parameter.EMPTY_ARRAY)
+        if (run == null) return
+
+        for (MethodCallExpression call : blockCalls(run.code)) {
+            ClosureExpression achievement = lastClosure(call)
+            if (call.methodAsString != 'achievement' || achievement == null) continue
+            for (MethodCallExpression block : blockCalls(achievement.code)) {
+                List<Expression> args = arguments(block)
+                if (block.methodAsString in ['activators', 'deactivators'] && args.size() == 1 && args[0] instanceof ClosureExpression) {
+                    Set<String> reads = ReadCollector.collect((ClosureExpression) args[0])
+                    if (reads != null) {
+                        ListExpression list = new ListExpression(reads.collect { String read -> (Expression) new ConstantExpression(read) })
+                        block.arguments = new ArgumentListExpression(list, args[0])
+                    }
+                }
+            }
+        }
+    }
+
+    // the methods of Math whose result only depends on their arguments (not random())
+    private static final Set<String> PURE_MATH = [
+            'abs', 'max', 'min', 'floor', 'ceil', 'round', 'rint', 'signum', 'sqrt', 'cbrt', 'pow', 'exp', 'expm1',
+            'log', 'log10', 'log1p', 'sin', 'cos', 'tan', 'asin', 'acos', 'atan', 'atan2', 'sinh', 'cosh', 'tanh', 'hypot',
+            'toRadians', 'toDegrees', 'floorDiv', 'floorMod', 'addExact', 'subtractExact', 'multiplyExact', 'negateExact',
+            'incrementExact', 'decrementExact', 'toIntExact', 'copySign', 'ulp', 'nextUp', 'nextDown', 'nextAfter', 'scalb',
+            'getExponent', 'IEEEremainder'
+    ] as Set<String>
+
+    private static class ReadCollector extends CodeVisitorSupport {
+        final Set<String> reads = new TreeSet<>()
+        // variables declared inside the closure, which can't carry anything in from outside
+        final Set<String> locals = new HashSet<>(['it'])
+        boolean tracked = true
+
+        // The keys the closure reads, or null if its result may depend on something else
+        static Set<String> collect(ClosureExpression closure) {
+            ReadCollector collector = new ReadCollector()
+            closure.parameters?.each { Parameter parameter -> collector.locals << parameter.name }
+            closure.code.visit(collector)
+            return collector.tracked ? collector.reads : null
+        }
+
+        @Override
+        void visitPropertyExpression(PropertyExpression expression) {
+            Expression object = expression.objectExpression
+            if (object instanceof VariableExpression && ((VariableExpression) object).name in ['state', 'shared'] && expression.propertyAsString != null) {
+                reads << "${((VariableExpression) object).name}.${expression.propertyAsString}".toString()
+                return
+            }
+            if (object instanceof ClassExpression) {
+                // e.g. Calendar.instance
+                tracked = false
+                return
+            }
+            super.visitPropertyExpression(expression)
+        }
+
+        @Override
+        void visitAttributeExpression(AttributeExpression expression) {
+            tracked = false
+        }
+
+        @Override
+        void visitVariableExpression(VariableExpression expression) {
+            if (expression.name in ['state', 'shared']) {
+                // state[key], or the map passed somewhere
+                reads << "${expression.name}.*".toString()
+            } else if (!locals.contains(expression.name)) {
+                tracked = false
+            }
+        }
+
+        @Override
+        void visitDeclarationExpression(DeclarationExpression expression) {
+            if (expression.isMultipleAssignmentDeclaration()) {
+                expression.tupleExpression.expressions.each { Expression variable -> locals << ((VariableExpression) variable).name }
+            } else {
+                locals << expression.variableExpression.name
+            }
+            super.visitDeclarationExpression(expression)
+        }
+
+        @Override
+        void visitClosureExpression(ClosureExpression expression) {
+            expression.parameters?.each { Parameter parameter -> locals << parameter.name }
+            super.visitClosureExpression(expression)
+        }
+
+        @Override
+        void visitForLoop(ForStatement loop) {
+            locals << loop.variable.name
+            super.visitForLoop(loop)
+        }
+
+        @Override
+        void visitCatchStatement(CatchStatement statement) {
+            locals << statement.variable.name
+            super.visitCatchStatement(statement)
+        }
+
+        @Override
+        void visitMethodCallExpression(MethodCallExpression call) {
+            if (isMath(call.objectExpression)) {
+                if (call.methodAsString in PURE_MATH) {
+                    call.arguments.visit(this)
+                } else {
+                    tracked = false
+                }
+                return
+            }
+            if (call.isImplicitThis() || call.objectExpression instanceof ClassExpression) {
+                tracked = false
+                return
+            }
+            super.visitMethodCallExpression(call)
+        }
+
+        // class names aren't resolved yet at this phase, so Math is still a variable unless it was written out in full
+        private boolean isMath(Expression expression) {
+            if (expression instanceof VariableExpression) {
+                return ((VariableExpression) expression).name == 'Math' && !locals.contains('Math')
+            }
+            return expression instanceof ClassExpression && expression.type.name == Math.name
+        }
+
+        @Override
+        void visitStaticMethodCallExpression(StaticMethodCallExpression call) {
+            tracked = false
+        }
+
+        @Override
+        void visitConstructorCallExpression(ConstructorCallExpression call) {
+            tracked = false
+        }
+
+        @Override
+        void visitMethodPointerExpression(MethodPointerExpression expression) {
+            tracked = false
+        }
+    }
+}
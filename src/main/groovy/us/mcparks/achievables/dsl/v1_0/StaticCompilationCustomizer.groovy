@@ -0,0 +1,458 @@
+package us.mcparks.achievables.dsl.v1_0
+
+import groovy.transform.CompileStatic
+import org.codehaus.groovy.ast.ASTNode
+import org.codehaus.groovy.ast.AnnotationNode
+import org.codehaus.groovy.ast.ClassCodeExpressionTransformer
+import org.codehaus.groovy.ast.ClassHelper
+import org.codehaus.groovy.ast.ClassNode
+import org.codehaus.groovy.ast.MethodNode
+import org.codehaus.groovy.ast.Parameter
+import org.codehaus.groovy.ast.expr.*
+import org.codehaus.groovy.ast.stmt.BlockStatement
+import org.codehaus.groovy.ast.stmt.ExpressionStatement
+import org.codehaus.groovy.ast.stmt.Statement
+import org.codehaus.groovy.classgen.GeneratorContext
+import org.codehaus.groovy.control.CompilePhase
+import org.codehaus.groovy.control.SourceUnit
+import org.codehaus.groovy.control.customizers.CompilationCustomizer
+import org.codehaus.groovy.syntax.SyntaxException
+import org.codehaus.groovy.syntax.Token
+import org.codehaus.groovy.syntax.TokenUtil
+import org.codehaus.groovy.syntax.Types
+import us.mcparks.achievables.Achievables
+import us.mcparks.achievables.events.Event
+import us.mcparks.achievables.framework.AchievablePlayer
+import us.mcparks.achievables.framework.StateRecord
+import us.mcparks.achievables.framework.StateSchema
+import us.mcparks.achievables.groovy.StaticallyCompiledClosure
+
+import java.lang.reflect.Modifier
+
+/**
+ * Statically compiles a BIGAL script's activators, deactivators and event handlers when its achievement block says
+ * {@code compileStatic true}.
+ *
+ * Each closure's body becomes a {@code @CompileStatic} method of the script taking {@code (state, shared, event, player)},
+ * where {@code event} has the type {@link us.mcparks.achievables.AchievableManager#getEventClass} returns for the
+ * handler's event, and {@code state.foo}/{@code shared.foo} are turned into typed slot reads and writes on the layout
+ * declared by the {@code state {}} and {@code shared {}} blocks. Anything that doesn't type check against those is a
+ * compile error when the script is loaded, rather than a MissingPropertyException when an event comes in.
+ */
+@CompileStatic
+class StaticCompilationCustomizer extends CompilationCustomizer {
+    static final String FLAG = 'compileStatic'
+
+    StaticCompilationCustomizer() {
+        super(CompilePhase.CONVERSION)
+    }
+
+    @Override
+    void call(SourceUnit source, GeneratorContext context, ClassNode classNode) {
+        if (!classNode.isScript()) return
+        MethodNode run = classNode.getMethod('run', Parameter.EMPTY_ARRAY)
+        if (run == null) return
+
+        for (MethodCallExpression call : blockCalls(run.code)) {
+            ClosureExpression achievement = lastClosure(call)
+            if (call.methodAsString == 'achievement' && achievement != null && isEnabled(achievement)) {
+                new ScriptCompiler(source, classNode).compile(achievement)
+            }
+        }
+    }
+
+    private static boolean isEnabled(ClosureExpression achievement) {
+        return blockCalls(achievement.code).any { MethodCallExpression call ->
+            if (call.methodAsString != FLAG) return false
+            List<Expression> args = arguments(call)
+            return args.size() == 1 && args[0] instanceof ConstantExpression && ((ConstantExpression) args[0]).value == Boolean.TRUE
+        }
+    }
+
+    // The top level calls of a block, e.g. the state {} and events {} of an achievement block
+    static List<MethodCallExpression> blockCalls(Statement code) {
+        List<MethodCallExpression> calls = []
+        for (Statement statement : statements(code)) {
+            if (statement instanceof ExpressionStatement && ((ExpressionStatement) statement).expression instanceof MethodCallExpression) {
+                MethodCallExpression call = (MethodCallExpression) ((ExpressionStatement) statement).expression
+                if (call.isImplicitThis()) {
+                    calls << call
+                }
+            }
+        }
+        return calls
+    }
+
+    static List<Statement> statements(Statement code) {
+        return code instanceof BlockStatement ? ((BlockStatement) code).statements : [code]
+    }
+
+    static List<Expression> arguments(MethodCallExpression call) {
+        return call.arguments instanceof TupleExpression ? ((TupleExpression) call.arguments).expressions : [call.arguments]
+    }
+
+    static ClosureExpression lastClosure(MethodCallExpression call) {
+        List<Expression> args = arguments(call)
+        return !args.isEmpty() && args[-1] instanceof ClosureExpression ? (ClosureExpression) args[-1] : null
+    }
+
+    private static class ScriptCompiler {
+        final SourceUnit source
+        final ClassNode scriptClass
+        final Layout state = new Layout('state')
+        final Layout shared = new Layout('shared')
+        int handlerCount = 0
+
+        ScriptCompiler(SourceUnit source, ClassNode scriptClass) {
+            this.source = source
+            this.scriptClass = scriptClass
+        }
+
+        void compile(ClosureExpression achievement) {
+            List<MethodCallExpression> calls = blockCalls(achievement.code)
+            // read the layouts first; every handler is compiled against them
+            for (MethodCallExpression call : calls) {
+                ClosureExpression block = lastClosure(call)
+                if (block == null) continue
+                if (call.methodAsString == 'state') {
+                    state.read(block, this)
+                } else if (call.methodAsString == 'shared') {
+                    shared.read(block, this)
+                }
+            }
+
+            for (MethodCallExpression call : calls) {
+                if (call.methodAsString in ['activators', 'deactivators']) {
+                    replaceClosure(call, ClassHelper.make(Event))
+                } else if (call.methodAsString == 'events' && lastClosure(call) != null) {
+                    for (MethodCallExpression on : blockCalls(lastClosure(call).code)) {
+                        if (on.methodAsString == 'on') {
+                            compileEventHandler(on)
+                        }
+                    }
+                }
+            }
+        }
+
+        private void compileEventHandler(MethodCallExpression on) {
+            Expression eventName = arguments(on).find { it instanceof ConstantExpression && ((ConstantExpression) it).value instanceof String }
+            if (eventName == null) {
+                error(on, "${FLAG} needs the event name of on(...) to be a string literal")
+                return
+            }
+            String name = (String) ((ConstantExpression) eventName).value
+            Class<?> eventClass = null
+            try {
+                eventClass = Achievables.getInstance()?.getAchievableManager()?.getEventClass(name)
+            } catch (Exception ignored) {
+            }
+            if (eventClass == null) {
+                error(eventName, "Unknown event '${name}': ${FLAG} needs the event's class when the script is loaded")
+                return
+            }
+            replaceClosure(on, ClassHelper.make(eventClass))
+        }
+
+        // Moves the call's closure into a statically compiled method and passes a StaticallyCompiledClosure instead
+        private void replaceClosure(MethodCallExpression call, ClassNode eventType) {
+            ClosureExpression closure = lastClosure(call)
+            if (closure == null) return
+            if (closure.parameters != null && closure.parameters.length > 0) {
+                error(closure, "${FLAG} closures can't declare parameters; use state, shared, event and player")
+                return
+            }
+
+            String methodName = "bigal\$${call.methodAsString}\$${handlerCount++}"
+            Statement body = closure.code
+            body.visit(new StateAccessTransformer(this))
+
+            Parameter[] parameters = [
+                    new Parameter(ClassHelper.make(StateRecord), 'state'),
+                    new Parameter(ClassHelper.make(StateRecord), 'shared'),
+                    new Parameter(eventType, 'event'),
+                    new Parameter(ClassHelper.make(AchievablePlayer), 'player')
+            ] as Parameter[]
+            MethodNode method = new MethodNode(methodName, Modifier.PUBLIC | Modifier.STATIC, ClassHelper.OBJECT_TYPE,
+                    parameters, ClassNode.EMPTY_ARRAY, body)
+            method.addAnnotation(new AnnotationNode(ClassHelper.make(CompileStatic)))
+            method.setSourcePosition(closure)
+            scriptClass.addMethod(method)
+
+            Expression compiled = new ConstructorCallExpression(ClassHelper.make(StaticallyCompiledClosure), new ArgumentListExpression(
+                    new ClassExpression(scriptClass),
+                    new ConstantExpression(methodName),
+                    new ConstantExpression(state.getLayout()),
+                    new ConstantExpression(shared.getLayout())))
+            compiled.setSourcePosition(closure)
+            List<Expression> args = arguments(call)
+            args.set(args.size() - 1, compiled)
+        }
+
+        void error(ASTNode node, String message) {
+            source.addError(new SyntaxException(message, node.lineNumber, node.columnNumber, node.lastLineNumber, node.lastColumnNumber))
+        }
+    }
+
+    // The slots a state {} or shared {} block declares, in the order StateSchema will lay them out
+    private static class Layout {
+        final String name
+        // a null type is a key that's only ever set to null, which doesn't survive serialization
+        final Map<String, StateSchema.SlotType> slots = new LinkedHashMap<>()
+
+        Layout(String name) {
+            this.name = name
+        }
+
+        void read(ClosureExpression block, ScriptCompiler compiler) {
+            for (Statement statement : statements(block.code)) {
+                Expression expression = statement instanceof ExpressionStatement ? ((ExpressionStatement) statement).expression : null
+                if (!(expression instanceof BinaryExpression)
+                        || ((BinaryExpression) expression).operation.type != Types.ASSIGN
+                        || !(((BinaryExpression) expression).leftExpression instanceof VariableExpression)) {
+                    compiler.error(statement, "With ${FLAG}, ${name} {} may only contain 'key = literal' assignments")
+                    continue
+                }
+                BinaryExpression assignment = (BinaryExpression) expression
+                String key = ((VariableExpression) assignment.leftExpression).name
+                Expression value = assignment.rightExpression
+                if (name == 'shared') {
+                    value = mergeableInitial(value)
+                }
+                if (value instanceof ConstantExpression && ((ConstantExpression) value).value == null) {
+                    slots.put(key, slots.get(key))
+                    continue
+                }
+                StateSchema.SlotType type = literalType(value)
+                if (type == null) {
+                    compiler.error(value, "With ${FLAG}, the initial value of ${name}.${key} must be a literal")
+                } else {
+                    slots.put(key, type)
+                }
+            }
+        }
+
+        // The initial value of counter(0), set([...]) and the like, which is what the slot holds
+        private static Expression mergeableInitial(Expression value) {
+            if (!(value instanceof MethodCallExpression) || !((MethodCallExpression) value).isImplicitThis()) {
+                return value
+            }
+            MethodCallExpression call = (MethodCallExpression) value
+            List<Expression> args = arguments(call)
+            switch (call.methodAsString) {
+                case 'counter':
+                    return args.isEmpty() ? new ConstantExpression(0) : args[0]
+                case 'set':
+                    return args.isEmpty() ? new ListExpression() : args[0]
+                case 'maximum':
+                case 'minimum':
+                case 'register':
+                    return args.size() == 1 ? args[0] : value
+                default:
+                    return value
+            }
+        }
+
+        int indexOf(String key) {
+            int slot = 0
+            for (Map.Entry<String, StateSchema.SlotType> entry : slots.entrySet()) {
+                if (entry.value != null) {
+                    if (entry.key == key) return slot
+                    slot++
+                }
+            }
+            return -1
+        }
+
+        StateSchema.SlotType typeOf(String key) {
+            return slots.get(key)
+        }
+
+        String getLayout() {
+            List<String> names = []
+            List<StateSchema.SlotType> types = []
+            slots.each { String key, StateSchema.SlotType type ->
+                if (type != null) {
+                    names << key
+                    types << type
+                }
+            }
+            return StateSchema.layoutOf(names, types)
+        }
+
+        // Mirrors what StateSchema infers from the value once it's been through JSON
+        private static StateSchema.SlotType literalType(Expression value) {
+            if (value instanceof UnaryMinusExpression && ((UnaryMinusExpression) value).expression instanceof ConstantExpression) {
+                value = ((UnaryMinusExpression) value).expression
+            }
+            if (value instanceof ConstantExpression) {
+                Object constant = ((ConstantExpression) value).value
+                if (constant instanceof Boolean) return StateSchema.SlotType.BOOLEAN
+                if (constant instanceof Integer || constant instanceof Long || constant instanceof Short || constant instanceof Byte
+                        || (constant instanceof BigInteger && ((BigInteger) constant).bitLength() < 64)) return StateSchema.SlotType.LONG
+                if (constant instanceof Number) return StateSchema.SlotType.DOUBLE
+                if (constant instanceof String || constant instanceof Character) return StateSchema.SlotType.OBJECT
+                return null
+            }
+            if (value instanceof ListExpression || value instanceof MapExpression || value instanceof GStringExpression) {
+                return StateSchema.SlotType.OBJECT
+            }
+            return null
+        }
+    }
+
+    // Rewrites state.foo and shared.foo into the typed StateRecord accessors of foo's slot
+    private static class StateAccessTransformer extends ClassCodeExpressionTransformer {
+        final ScriptCompiler compiler
+
+        StateAccessTransformer(ScriptCompiler compiler) {
+            this.compiler = compiler
+        }
+
+        @Override
+        protected SourceUnit getSourceUnit() {
+            return compiler.source
+        }
+
+        @Override
+        Expression transform(Expression expression) {
+            if (expression == null) return null
+            if (expression instanceof ClosureExpression) {
+                ((ClosureExpression) expression).code.visit(this)
+                return expression
+            }
+            if (expression instanceof BinaryExpression && isStateProperty(((BinaryExpression) expression).leftExpression)) {
+                BinaryExpression binary = (BinaryExpression) expression
+                int operation = binary.operation.type
+                if (operation == Types.ASSIGN) {
+                    return write((PropertyExpression) binary.leftExpression, transform(binary.rightExpression), expression)
+                }
+                if (Types.ofType(operation, Types.ASSIGNMENT_OPERATOR)) {
+                    PropertyExpression property = (PropertyExpression) binary.leftExpression
+                    Expression value = new BinaryExpression(read(property),
+                            Token.newSymbol(TokenUtil.removeAssignment(operation), binary.operation.startLine, binary.operation.startColumn),
+                            transform(binary.rightExpression))
+                    value.setSourcePosition(expression)
+                    return write(property, value, expression)
+                }
+            }
+            if (expression instanceof PostfixExpression && isStateProperty(((PostfixExpression) expression).expression)) {
+                PostfixExpression postfix = (PostfixExpression) expression
+                return postfixIncrement((PropertyExpression) postfix.expression, postfix.operation, expression)
+            }
+            if (expression instanceof PrefixExpression && isStateProperty(((PrefixExpression) expression).expression)) {
+                PrefixExpression prefix = (PrefixExpression) expression
+                return increment((PropertyExpression) prefix.expression, prefix.operation, expression)
+            }
+            if (isStateProperty(expression)) {
+                return read((PropertyExpression) expression)
+            }
+            return expression.transformExpression(this)
+        }
+
+        private static boolean isStateProperty(Expression expression) {
+            if (!(expression instanceof PropertyExpression) || expression instanceof AttributeExpression) return false
+            PropertyExpression property = (PropertyExpression) expression
+            return property.objectExpression instanceof VariableExpression
+                    && ((VariableExpression) property.objectExpression).name in ['state', 'shared']
+                    && property.property instanceof ConstantExpression
+                    && !property.isSafe() && !property.isSpreadSafe()
+        }
+
+        private Layout layoutOf(PropertyExpression property) {
+            return ((VariableExpression) property.objectExpression).name == 'state' ? compiler.state : compiler.shared
+        }
+
+        // The key's slot, or -1 (after reporting it) if the layout doesn't declare it
+        private int slotOf(PropertyExpression property) {
+            Layout layout = layoutOf(property)
+            String key = property.propertyAsString
+            int slot = layout.indexOf(key)
+            if (slot < 0) {
+                compiler.error(property, "${layout.name}.${key} isn't declared in the ${layout.name} {} block, which ${FLAG} needs to know its type")
+            }
+            return slot
+        }
+
+        private Expression read(PropertyExpression property) {
+            int slot = slotOf(property)
+            StateSchema.SlotType type = slot < 0 ? null : layoutOf(property).typeOf(property.propertyAsString)
+            Expression read
+            switch (type) {
+                case StateSchema.SlotType.BOOLEAN:
+                    read = accessor(property, 'getBoolean', new ConstantExpression(slot, true))
+                    break
+                case StateSchema.SlotType.LONG:
+                    read = accessor(property, 'getLong', new ConstantExpression(slot, true))
+                    break
+                case StateSchema.SlotType.DOUBLE:
+                    read = accessor(property, 'getDouble', new ConstantExpression(slot, true))
+                    break
+                default:
+                    read = accessor(property, 'get', new ConstantExpression(property.propertyAsString))
+            }
+            read.setSourcePosition(property)
+            return read
+        }
+
+        private Expression write(PropertyExpression property, Expression value, Expression original) {
+            int slot = slotOf(property)
+            StateSchema.SlotType type = slot < 0 ? null : layoutOf(property).typeOf(property.propertyAsString)
+            Expression write
+            switch (type) {
+                case StateSchema.SlotType.BOOLEAN:
+                    write = accessor(property, 'setBoolean', new ConstantExpression(slot, true), value)
+                    break
+                case StateSchema.SlotType.LONG:
+                    write = accessor(property, 'setLong', new ConstantExpression(slot, true), value)
+                    break
+                case StateSchema.SlotType.DOUBLE:
+                    write = accessor(property, 'setDouble', new ConstantExpression(slot, true), value)
+                    break
+                default:
+                    write = accessor(property, 'set', new ConstantExpression(property.propertyAsString), value)
+            }
+            write.setSourcePosition(original)
+            return write
+        }
+
+        // ++state.foo and --state.foo, which are the new value
+        private Expression increment(PropertyExpression property, Token operation, Expression original) {
+            int operator = operation.type == Types.PLUS_PLUS ? Types.PLUS : Types.MINUS
+            Expression value = new BinaryExpression(read(property),
+                    Token.newSymbol(operator, operation.startLine, operation.startColumn), new ConstantExpression(1, true))
+            value.setSourcePosition(original)
+            return write(property, value, original)
+        }
+
+        // state.foo++ and state.foo--, which are the value before
+        private Expression postfixIncrement(PropertyExpression property, Token operation, Expression original) {
+            int slot = slotOf(property)
+            StateSchema.SlotType type = slot < 0 ? null : layoutOf(property).typeOf(property.propertyAsString)
+            Expression delta = new ConstantExpression(operation.type == Types.PLUS_PLUS ? 1 : -1, true)
+            Expression write
+            switch (type) {
+                case StateSchema.SlotType.LONG:
+                    write = accessor(property, 'getAndAddLong', new ConstantExpression(slot, true), delta)
+                    break
+                case StateSchema.SlotType.DOUBLE:
+                    write = accessor(property, 'getAndAddDouble', new ConstantExpression(slot, true), delta)
+                    break
+                default:
+                    // put() returns the previous value
+                    Expression value = new BinaryExpression(read(property), Token.newSymbol(Types.PLUS, operation.startLine, operation.startColumn), delta)
+                    value.setSourcePosition(original)
+                    write = accessor(property, 'put', new ConstantExpression(property.propertyAsString), value)
+            }
+            write.setSourcePosition(original)
+            return write
+        }
+
+        private static MethodCallExpression accessor(PropertyExpression property, String method, Expression... args) {
+            VariableExpression record = new VariableExpression(((VariableExpression) property.objectExpression).name)
+            record.setSourcePosition(property.objectExpression)
+            MethodCallExpression call = new MethodCallExpression(record, method, new ArgumentListExpression(args))
+            call.setImplicitThis(false)
+            return call
+        }
+    }
+}
@@ -4,8 +4,12 @@ import com.google.gson.reflect.TypeToken;
 import us.mcparks.achievables.events.Event;
 import us.mcparks.achievables.framework.Achievable;
 import us.mcparks.achievables.framework.AchievablePlayer;
+import us.mcparks.achievables.framework.StateDelta;
 import us.mcparks.achievables.framework.StatefulAchievable;
 import us.mcparks.achievables.triggers.AchievableTrigger;
+import us.mcparks.achievables.triggers.TriggerExecutor;
+import us.mcparks.achievables.triggers.TriggerIngestionQueue;
+import us.mcparks.achievables.triggers.TriggerRouter;
 
 import java.lang.reflect.Type;
 import java.util.Collection;
@@ -15,7 +19,41 @@ import java.util.concurrent.ExecutionException;
 public interface AchievableManager {
     Type achievableStateMapType = new TypeToken<Map<String,Object>>(){}.getType();
 
-    void processTrigger(AchievableTrigger trigger);
+    // Routes the trigger to every registered achievable listening for its type, which process it on the trigger executor
+    default void processTrigger(AchievableTrigger trigger) {
+        getTriggerRouter().route(trigger, getTriggerExecutor());
+    }
+
+    /**
+     * Hands the trigger off to the trigger queue, if one is set, and returns without waiting for it to be processed.
+     * Without a queue this is the same as {@link #processTrigger}.
+     *
+     * @return false if the queue dropped the trigger
+     */
+    default boolean submitTrigger(AchievableTrigger trigger) {
+        TriggerIngestionQueue queue = Achievables.getInstance().getTriggerQueue();
+        if (queue == null) {
+            processTrigger(trigger);
+            return true;
+        }
+        return queue.submit(trigger);
+    }
+
+    default TriggerRouter getTriggerRouter() {
+        return Achievables.getInstance().getTriggerRouter();
+    }
+
+    default TriggerExecutor getTriggerExecutor() {
+        return Achievables.getInstance().getTriggerExecutor();
+    }
+
+    default void registerAchievable(Achievable achievable) {
+        getTriggerRouter().register(achievable);
+    }
+
+    default void unregisterAchievable(Achievable achievable) {
+        getTriggerRouter().unregister(achievable);
+    }
 
     boolean isCompleted(Achievable achievable, AchievablePlayer player);
 
@@ -23,6 +61,12 @@ public interface AchievableManager {
 
     Collection<AchievablePlayer> getCurrentPlayers();
 
+    // Player-targeted triggers only need this membership check, so back it with a set lookup if getCurrentPlayers() isn't a Set
+    default boolean isCurrentPlayer(AchievablePlayer player) {
+        return getCurrentPlayers().contains(player);
+    }
+
+    // The player's stored state; achievables never change the returned map
     Map<String,Object> getPlayerState(AchievablePlayer player, StatefulAchievable achievable);
 
     void setPlayerState(AchievablePlayer player, StatefulAchievable achievable, Map<String,Object> state, boolean persist) throws ExecutionException;
@@ -31,10 +75,27 @@ public interface AchievableManager {
         setPlayerState(player, achievable, state, true);
     }
 
+    /**
+     * Saves only the keys an event handler changed. By default this stores the whole state with {@link #setPlayerState},
+     * and nothing at all if no key changed; override it if your storage can update single fields.
+     */
+    default void applyPlayerStateDelta(AchievablePlayer player, StatefulAchievable achievable, StateDelta delta, boolean persist) throws ExecutionException {
+        if (!delta.isEmpty()) {
+            setPlayerState(player, achievable, delta.getState(), persist);
+        }
+    }
+
     Map<String, Object> getStaticState(StatefulAchievable achievable);
 
     void setStaticState(StatefulAchievable achievable, Map<String, Object> state) throws ExecutionException;
 
+    // Like applyPlayerStateDelta, for static state
+    default void applyStaticStateDelta(StatefulAchievable achievable, StateDelta delta) throws ExecutionException {
+        if (!delta.isEmpty()) {
+            setStaticState(achievable, delta.getState());
+        }
+    }
+
     void initializePlayerState(AchievablePlayer player, StatefulAchievable achievable) throws ExecutionException;
 
     void initializeStaticState(StatefulAchievable achievable) throws ExecutionException;
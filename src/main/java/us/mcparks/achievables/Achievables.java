@@ -5,9 +5,20 @@ import lombok.Getter;
 import lombok.Setter;
 import us.mcparks.achievables.dsl.BigalsIntegratedGroovyAchievementLanguage;
 import us.mcparks.achievables.dsl.meta.MetaBuilder;
+import us.mcparks.achievables.framework.Achievable;
 import us.mcparks.achievables.groovy.BigAlAchievable;
+import us.mcparks.achievables.groovy.ExecutionBudget;
+import us.mcparks.achievables.metrics.AchievableMetrics;
+import us.mcparks.achievables.triggers.DirectTriggerExecutor;
+import us.mcparks.achievables.triggers.TriggerExecutor;
+import us.mcparks.achievables.triggers.TriggerIngestionQueue;
+import us.mcparks.achievables.triggers.TriggerRouter;
 import us.mcparks.achievables.utils.AchievableGsonManager;
+import us.mcparks.achievables.utils.CompiledScriptStore;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
@@ -23,6 +34,29 @@ public class Achievables {
     @Getter
     private static Achievables instance;
 
+    @Getter
+    private final TriggerRouter triggerRouter = new TriggerRouter();
+
+    // e.g. a PlayerStripedTriggerExecutor to take trigger processing off the thread that submits triggers
+    @Getter @Setter
+    private TriggerExecutor triggerExecutor = DirectTriggerExecutor.INSTANCE;
+
+    // set to have AchievableManager.submitTrigger queue triggers instead of processing them on the caller's thread
+    @Getter @Setter
+    private TriggerIngestionQueue triggerQueue;
+
+    // e.g. a RecordingAchievableMetrics or a SlowHandlerLog, to find out which achievables and events take up the time
+    @Getter @Setter
+    private AchievableMetrics metrics = AchievableMetrics.NONE;
+
+    // how much work a single run of a BIGAL script may do; unlimited unless set, e.g. to ExecutionBudget.DEFAULT
+    @Getter @Setter
+    private ExecutionBudget executionBudget = ExecutionBudget.UNLIMITED;
+
+    // how long merged writes to shared keys with a merge policy (counter(), set(), ...) wait before they're stored
+    @Getter @Setter
+    private long sharedStateFlushMillis = 1000;
+
     public Achievables(AchievableManager achievableManager) {
         instance = this;
         this.achievableManager = achievableManager;
@@ -33,6 +67,20 @@ public class Achievables {
         BigalsIntegratedGroovyAchievementLanguage.setMetaBuilderSupplier(builder);
     }
 
+    // Keeps compiled achievement scripts in the directory, so a restart loads them instead of compiling them again
+    public List<CompiledScriptStore> setCompiledScriptCache(Path directory) throws IOException {
+        return BigalsIntegratedGroovyAchievementLanguage.setCompiledScriptCache(directory);
+    }
+
+    // Stores the merged shared values of every registered BIGAL achievable right away; call it when shutting down
+    public void flushSharedState() {
+        for (Achievable achievable : triggerRouter.getAchievables()) {
+            if (achievable instanceof BigAlAchievable) {
+                ((BigAlAchievable) achievable).flushSharedState();
+            }
+        }
+    }
+
     public void setAchievableBackfillDataSupplier(Supplier<Object> handler) {
         BigAlAchievable.setBackfillDataSupplier(handler);
     }
@@ -0,0 +1,324 @@
+package us.mcparks.achievables;
+
+import us.mcparks.achievables.events.Event;
+import us.mcparks.achievables.framework.Achievable;
+import us.mcparks.achievables.framework.AchievablePlayer;
+import us.mcparks.achievables.framework.StateDelta;
+import us.mcparks.achievables.framework.StatefulAchievable;
+import us.mcparks.achievables.persistence.PersistedPlayer;
+import us.mcparks.achievables.persistence.StatePersistence;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+/**
+ * A ready-made {@link AchievableManager} that keeps all state in memory, in concurrent maps, and hands every persisted
+ * write to a {@link StatePersistence}.
+ *
+ * Call {@link #playerJoined} when a player comes online, which loads everything stored for them, and {@link #playerQuit}
+ * when they leave. Completions are kept in a bitset per player, indexed by achievable, so {@link #isCompleted} is a bit
+ * lookup. Saves go to the persistence right away, on the calling thread; wrap this in a
+ * {@link WriteBehindAchievableManager} to batch them.
+ */
+public class InMemoryAchievableManager implements AchievableManager {
+    private final StatePersistence persistence;
+    private final Function<AchievablePlayer, String> playerIds;
+    private final Function<String, Class<? extends Event>> eventClasses;
+
+    private final Map<AchievablePlayer, PlayerData> players = new ConcurrentHashMap<>();
+    private final Set<AchievablePlayer> onlinePlayers = ConcurrentHashMap.newKeySet();
+    private final Set<AchievablePlayer> onlinePlayersView = Collections.unmodifiableSet(onlinePlayers);
+    private final Map<UUID, Map<String, Object>> staticStates = new ConcurrentHashMap<>();
+    private final Map<UUID, Integer> achievableIndexes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextAchievableIndex = new AtomicInteger();
+
+    private InMemoryAchievableManager(Builder builder) {
+        this.persistence = builder.persistence;
+        this.playerIds = builder.playerIds;
+        Map<String, Class<? extends Event>> registered = new HashMap<>(builder.eventClasses);
+        Function<String, Class<? extends Event>> fallback = builder.eventClassResolver;
+        this.eventClasses = name -> {
+            Class<? extends Event> eventClass = registered.get(name);
+            return eventClass != null ? eventClass : fallback.apply(name);
+        };
+    }
+
+    public static Builder builder(Function<AchievablePlayer, String> playerIds) {
+        return new Builder(playerIds);
+    }
+
+    /**
+     * Loads the player's stored state and completions and adds them to {@link #getCurrentPlayers()}.
+     */
+    public void playerJoined(AchievablePlayer player) throws ExecutionException {
+        dataOf(player);
+        onlinePlayers.add(player);
+    }
+
+    /**
+     * Removes the player from {@link #getCurrentPlayers()} and drops their state from memory. If this manager is wrapped
+     * in a {@link WriteBehindAchievableManager}, flush the player there first. Writes for the player that arrive after this
+     * (e.g. from a trigger still being processed) go straight to the persistence, and don't bring them back into memory.
+     */
+    public void playerQuit(AchievablePlayer player) {
+        onlinePlayers.remove(player);
+        players.remove(player);
+    }
+
+    @Override
+    public Collection<AchievablePlayer> getCurrentPlayers() {
+        return onlinePlayersView;
+    }
+
+    @Override
+    public boolean isCurrentPlayer(AchievablePlayer player) {
+        return onlinePlayers.contains(player);
+    }
+
+    @Override
+    public boolean isCompleted(Achievable achievable, AchievablePlayer player) {
+        PlayerData data = players.get(player);
+        return data != null && data.isCompleted(indexOf(achievable.getUUID()));
+    }
+
+    @Override
+    public void completeAchievable(Achievable achievable, AchievablePlayer player) {
+        try {
+            PlayerData data = players.get(player);
+            if (data == null || data.complete(indexOf(achievable.getUUID()))) {
+                long start = startTiming();
+                persistence.saveCompletion(playerIds.apply(player), achievable.getUUID());
+                saveTimed(start);
+            }
+        } catch (IOException e) {
+            Achievables.getInstance().getLogger().log(Level.SEVERE, "Failed to save completion of achievable " + achievable.getUUID() + " for player " + player, e);
+        }
+    }
+
+    // null until the state is initialized, like any other manager
+    @Override
+    public Map<String, Object> getPlayerState(AchievablePlayer player, StatefulAchievable achievable) {
+        PlayerData data = players.get(player);
+        return data == null ? null : data.states.get(achievable.getUUID());
+    }
+
+    @Override
+    public void setPlayerState(AchievablePlayer player, StatefulAchievable achievable, Map<String, Object> state, boolean persist) throws ExecutionException {
+        PlayerData data = players.get(player);
+        if (data != null) {
+            data.states.put(achievable.getUUID(), state);
+        }
+        if (persist) {
+            try {
+                long start = startTiming();
+                persistence.savePlayerState(playerIds.apply(player), achievable.getUUID(), state);
+                saveTimed(start);
+            } catch (IOException e) {
+                throw new ExecutionException("Failed to save state of achievable " + achievable.getUUID() + " for player " + player, e);
+            }
+        }
+    }
+
+    @Override
+    public void applyPlayerStateDelta(AchievablePlayer player, StatefulAchievable achievable, StateDelta delta, boolean persist) throws ExecutionException {
+        if (delta.isEmpty()) {
+            return;
+        }
+        PlayerData data = players.get(player);
+        if (data != null) {
+            data.states.put(achievable.getUUID(), delta.getState());
+        }
+        if (persist) {
+            try {
+                long start = startTiming();
+                persistence.savePlayerStateDelta(playerIds.apply(player), achievable.getUUID(), delta);
+                saveTimed(start);
+            } catch (IOException e) {
+                throw new ExecutionException("Failed to save state of achievable " + achievable.getUUID() + " for player " + player, e);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStaticState(StatefulAchievable achievable) {
+        return staticStates.get(achievable.getUUID());
+    }
+
+    @Override
+    public void setStaticState(StatefulAchievable achievable, Map<String, Object> state) throws ExecutionException {
+        staticStates.put(achievable.getUUID(), state);
+        try {
+            long start = startTiming();
+            persistence.saveStaticState(achievable.getUUID(), state);
+            saveTimed(start);
+        } catch (IOException e) {
+            throw new ExecutionException("Failed to save static state of achievable " + achievable.getUUID(), e);
+        }
+    }
+
+    @Override
+    public void applyStaticStateDelta(StatefulAchievable achievable, StateDelta delta) throws ExecutionException {
+        if (delta.isEmpty()) {
+            return;
+        }
+        staticStates.put(achievable.getUUID(), delta.getState());
+        try {
+            long start = startTiming();
+            persistence.saveStaticStateDelta(achievable.getUUID(), delta);
+            saveTimed(start);
+        } catch (IOException e) {
+            throw new ExecutionException("Failed to save static state of achievable " + achievable.getUUID(), e);
+        }
+    }
+
+    // Uses the stored state if there is one, and never replaces a state that's already there; does nothing for a player who isn't loaded
+    @Override
+    public void initializePlayerState(AchievablePlayer player, StatefulAchievable achievable) throws ExecutionException {
+        PlayerData data = players.get(player);
+        if (data != null) {
+            data.states.computeIfAbsent(achievable.getUUID(), uuid -> achievable.getInitialPlayerState());
+        }
+    }
+
+    @Override
+    public void initializeStaticState(StatefulAchievable achievable) throws ExecutionException {
+        UUID uuid = achievable.getUUID();
+        if (staticStates.containsKey(uuid)) {
+            return;
+        }
+        Map<String, Object> stored;
+        try {
+            long start = startTiming();
+            stored = persistence.loadStaticState(uuid);
+            loadTimed(start);
+        } catch (IOException e) {
+            throw new ExecutionException("Failed to load static state of achievable " + uuid, e);
+        }
+        staticStates.putIfAbsent(uuid, stored != null ? stored : achievable.getInitialStaticState());
+    }
+
+    @Override
+    public Class<? extends Event> getEventClass(String eventClassName) {
+        return eventClasses.apply(eventClassName);
+    }
+
+    // Only for playerJoined; writes never load a player, so one who quit stays out of memory
+    private PlayerData dataOf(AchievablePlayer player) throws ExecutionException {
+        PlayerData data = players.get(player);
+        if (data != null) {
+            return data;
+        }
+        PersistedPlayer stored;
+        try {
+            long start = startTiming();
+            stored = persistence.loadPlayer(playerIds.apply(player));
+            loadTimed(start);
+        } catch (IOException e) {
+            throw new ExecutionException("Failed to load achievable state for player " + player, e);
+        }
+        data = new PlayerData(stored.getStates());
+        for (UUID completed : stored.getCompleted()) {
+            data.complete(indexOf(completed));
+        }
+        PlayerData existing = players.putIfAbsent(player, data);
+        return existing != null ? existing : data;
+    }
+
+    // 0 when there are no metrics to report the time to
+    private static long startTiming() {
+        return Achievables.getInstance().getMetrics().isEnabled() ? System.nanoTime() : 0;
+    }
+
+    private static void loadTimed(long start) {
+        if (start != 0) {
+            Achievables.getInstance().getMetrics().stateLoaded(System.nanoTime() - start);
+        }
+    }
+
+    private static void saveTimed(long start) {
+        if (start != 0) {
+            Achievables.getInstance().getMetrics().stateSaved(System.nanoTime() - start);
+        }
+    }
+
+    private int indexOf(UUID achievable) {
+        Integer index = achievableIndexes.get(achievable);
+        return index != null ? index : achievableIndexes.computeIfAbsent(achievable, uuid -> nextAchievableIndex.getAndIncrement());
+    }
+
+    private static class PlayerData {
+        final Map<UUID, Map<String, Object>> states;
+        // indexed by indexOf(achievable)
+        private final BitSet completed = new BitSet();
+
+        PlayerData(Map<UUID, Map<String, Object>> states) {
+            this.states = new ConcurrentHashMap<>(states);
+        }
+
+        synchronized boolean isCompleted(int index) {
+            return completed.get(index);
+        }
+
+        // false if it was already completed
+        synchronized boolean complete(int index) {
+            if (completed.get(index)) {
+                return false;
+            }
+            completed.set(index);
+            return true;
+        }
+    }
+
+    public static class Builder {
+        final Function<AchievablePlayer, String> playerIds;
+        StatePersistence persistence = StatePersistence.NONE;
+        final Map<String, Class<? extends Event>> eventClasses = new HashMap<>();
+        Function<String, Class<? extends Event>> eventClassResolver = InMemoryAchievableManager::loadEventClass;
+
+        Builder(Function<AchievablePlayer, String> playerIds) {
+            this.playerIds = Objects.requireNonNull(playerIds, "playerIds");
+        }
+
+        public Builder persistence(StatePersistence persistence) {
+            this.persistence = Objects.requireNonNull(persistence, "persistence");
+            return this;
+        }
+
+        // Makes the event class available to scripts under its simple name
+        public Builder eventClass(Class<? extends Event> eventClass) {
+            this.eventClasses.put(eventClass.getSimpleName(), eventClass);
+            return this;
+        }
+
+        // For event names that weren't registered with eventClass; by default they're looked up as fully qualified class names
+        public Builder eventClassResolver(Function<String, Class<? extends Event>> eventClassResolver) {
+            this.eventClassResolver = Objects.requireNonNull(eventClassResolver, "eventClassResolver");
+            return this;
+        }
+
+        public InMemoryAchievableManager build() {
+            return new InMemoryAchievableManager(this);
+        }
+    }
+
+    private static Class<? extends Event> loadEventClass(String name) {
+        try {
+            Class<?> eventClass = Class.forName(name);
+            return Event.class.isAssignableFrom(eventClass) ? eventClass.asSubclass(Event.class) : null;
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+}
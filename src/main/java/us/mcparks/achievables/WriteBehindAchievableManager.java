@@ -0,0 +1,310 @@
+package us.mcparks.achievables;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import us.mcparks.achievables.events.Event;
+import us.mcparks.achievables.framework.Achievable;
+import us.mcparks.achievables.framework.AchievablePlayer;
+import us.mcparks.achievables.framework.StateDelta;
+import us.mcparks.achievables.framework.StatefulAchievable;
+import us.mcparks.achievables.triggers.AchievableTrigger;
+import us.mcparks.achievables.triggers.TriggerExecutor;
+import us.mcparks.achievables.triggers.TriggerRouter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * Wraps an {@link AchievableManager} so that state writes are buffered and persisted in batches, instead of one write
+ * per event handler.
+ *
+ * Persisted player state writes and static state writes are kept in memory, where a later write to the same player and
+ * achievable (or the same achievable's static state) replaces the earlier one, and are passed on to the wrapped manager
+ * when enough of them have piled up or the flush interval has passed. Deltas to the same state are merged, so the
+ * wrapped manager still gets to update only the keys that changed. Until then reads return the buffered state, so
+ * achievables never see the difference. Writes with {@code persist} set to false go straight through, as before.
+ *
+ * Call {@link #flush(AchievablePlayer)} when a player leaves and {@link #close()} on shutdown, so nothing is lost.
+ * Override {@link #write(List)} to persist a whole batch at once (e.g. in a single transaction).
+ */
+public class WriteBehindAchievableManager implements AchievableManager, AutoCloseable {
+    @Getter
+    private final AchievableManager delegate;
+    private final int maxPendingWrites;
+    private final int maxBatchSize;
+    private final Map<StateKey, StateDelta> pending = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+
+    public WriteBehindAchievableManager(AchievableManager delegate) {
+        this(delegate, 1024, 256, 5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param maxPendingWrites flush once this many player/achievable states are waiting to be written
+     * @param maxBatchSize the most writes passed to {@link #write(List)} at once
+     * @param flushInterval how long a write can wait before being flushed
+     */
+    public WriteBehindAchievableManager(AchievableManager delegate, int maxPendingWrites, int maxBatchSize, long flushInterval, TimeUnit unit) {
+        if (maxPendingWrites < 1 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxPendingWrites and maxBatchSize must be positive");
+        }
+        this.delegate = delegate;
+        this.maxPendingWrites = maxPendingWrites;
+        this.maxBatchSize = maxBatchSize;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "achievables-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, unit);
+    }
+
+    @Override
+    public Map<String, Object> getPlayerState(AchievablePlayer player, StatefulAchievable achievable) {
+        StateDelta delta = pending.get(new StateKey(player, achievable));
+        return delta != null ? delta.getState() : delegate.getPlayerState(player, achievable);
+    }
+
+    @Override
+    public void setPlayerState(AchievablePlayer player, StatefulAchievable achievable, Map<String, Object> state, boolean persist) throws ExecutionException {
+        StateKey key = new StateKey(player, achievable);
+        if (!persist) {
+            // a write that's still waiting would otherwise be read back instead of this one, so it takes its place
+            if (pending.computeIfPresent(key, (k, previous) -> previous.merge(StateDelta.full(state))) == null) {
+                delegate.setPlayerState(player, achievable, state, false);
+            }
+            return;
+        }
+        buffer(key, StateDelta.full(state));
+    }
+
+    @Override
+    public void applyPlayerStateDelta(AchievablePlayer player, StatefulAchievable achievable, StateDelta delta, boolean persist) throws ExecutionException {
+        if (delta.isEmpty()) {
+            return;
+        }
+        StateKey key = new StateKey(player, achievable);
+        if (!persist) {
+            if (pending.computeIfPresent(key, (k, previous) -> previous.merge(delta)) == null) {
+                delegate.applyPlayerStateDelta(player, achievable, delta, false);
+            }
+            return;
+        }
+        buffer(key, delta);
+    }
+
+    @Override
+    public Map<String, Object> getStaticState(StatefulAchievable achievable) {
+        StateDelta delta = pending.get(new StateKey(null, achievable));
+        return delta != null ? delta.getState() : delegate.getStaticState(achievable);
+    }
+
+    @Override
+    public void setStaticState(StatefulAchievable achievable, Map<String, Object> state) {
+        buffer(new StateKey(null, achievable), StateDelta.full(state));
+    }
+
+    @Override
+    public void applyStaticStateDelta(StatefulAchievable achievable, StateDelta delta) {
+        if (!delta.isEmpty()) {
+            buffer(new StateKey(null, achievable), delta);
+        }
+    }
+
+    private void buffer(StateKey key, StateDelta delta) {
+        pending.merge(key, delta, StateDelta::merge);
+        if (pending.size() >= maxPendingWrites && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    /**
+     * Writes every buffered state through to the wrapped manager, blocking until it's done.
+     */
+    public void flush() throws ExecutionException {
+        flush(pending.keySet());
+    }
+
+    /**
+     * Writes the player's buffered states through to the wrapped manager, e.g. when they leave.
+     */
+    public void flush(AchievablePlayer player) throws ExecutionException {
+        List<StateKey> keys = new ArrayList<>();
+        for (StateKey key : pending.keySet()) {
+            if (player.equals(key.getPlayer())) {
+                keys.add(key);
+            }
+        }
+        flush(keys);
+    }
+
+    private void flush(Collection<StateKey> keys) throws ExecutionException {
+        synchronized (flushLock) {
+            List<PendingWrite> batch = new ArrayList<>(Math.min(keys.size(), maxBatchSize));
+            for (StateKey key : keys) {
+                StateDelta delta = pending.get(key);
+                if (delta != null) {
+                    batch.add(new PendingWrite(key.getPlayer(), key.getAchievable(), delta));
+                }
+                if (batch.size() == maxBatchSize) {
+                    writeBatch(batch);
+                    batch = new ArrayList<>(maxBatchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingWrite> batch) throws ExecutionException {
+        write(batch);
+        // only forget the writes that weren't replaced while this batch was being written
+        for (PendingWrite write : batch) {
+            pending.remove(new StateKey(write.getPlayer(), write.getAchievable()), write.getDelta());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception ex) {
+            Achievables.getInstance().getLogger().log(Level.SEVERE, "Error flushing " + pending.size() + " achievable states, will retry", ex);
+        }
+    }
+
+    /**
+     * Persists a batch of states through the wrapped manager. Writes in a failed batch stay buffered and are retried on
+     * the next flush.
+     */
+    protected void write(List<PendingWrite> batch) throws ExecutionException {
+        for (PendingWrite write : batch) {
+            if (write.isStatic()) {
+                delegate.applyStaticStateDelta(write.getAchievable(), write.getDelta());
+            } else {
+                delegate.applyPlayerStateDelta(write.getPlayer(), write.getAchievable(), write.getDelta(), true);
+            }
+        }
+    }
+
+    public int getPendingWriteCount() {
+        return pending.size();
+    }
+
+    // Stops the background flushes and writes out everything that's left
+    @Override
+    public void close() throws ExecutionException {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class PendingWrite {
+        // null for static state
+        private final AchievablePlayer player;
+        private final StatefulAchievable achievable;
+        private final StateDelta delta;
+
+        public Map<String, Object> getState() {
+            return delta.getState();
+        }
+
+        public boolean isStatic() {
+            return player == null;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class StateKey {
+        private final AchievablePlayer player;
+        private final StatefulAchievable achievable;
+    }
+
+    @Override
+    public void processTrigger(AchievableTrigger trigger) {
+        delegate.processTrigger(trigger);
+    }
+
+    @Override
+    public boolean submitTrigger(AchievableTrigger trigger) {
+        return delegate.submitTrigger(trigger);
+    }
+
+    @Override
+    public TriggerRouter getTriggerRouter() {
+        return delegate.getTriggerRouter();
+    }
+
+    @Override
+    public TriggerExecutor getTriggerExecutor() {
+        return delegate.getTriggerExecutor();
+    }
+
+    @Override
+    public void registerAchievable(Achievable achievable) {
+        delegate.registerAchievable(achievable);
+    }
+
+    @Override
+    public void unregisterAchievable(Achievable achievable) {
+        delegate.unregisterAchievable(achievable);
+    }
+
+    @Override
+    public boolean isCompleted(Achievable achievable, AchievablePlayer player) {
+        return delegate.isCompleted(achievable, player);
+    }
+
+    @Override
+    public void completeAchievable(Achievable achievable, AchievablePlayer player) {
+        delegate.completeAchievable(achievable, player);
+    }
+
+    @Override
+    public Collection<AchievablePlayer> getCurrentPlayers() {
+        return delegate.getCurrentPlayers();
+    }
+
+    @Override
+    public boolean isCurrentPlayer(AchievablePlayer player) {
+        return delegate.isCurrentPlayer(player);
+    }
+
+    @Override
+    public void initializePlayerState(AchievablePlayer player, StatefulAchievable achievable) throws ExecutionException {
+        delegate.initializePlayerState(player, achievable);
+    }
+
+    @Override
+    public void initializeStaticState(StatefulAchievable achievable) throws ExecutionException {
+        delegate.initializeStaticState(achievable);
+    }
+
+    @Override
+    public Class<? extends Event> getEventClass(String eventClassName) {
+        return delegate.getEventClass(eventClassName);
+    }
+}
@@ -0,0 +1,176 @@
+package us.mcparks.achievables.dsl;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import us.mcparks.achievables.dsl.meta.AchievableWithMeta;
+import us.mcparks.achievables.framework.Achievable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Loads many BIGAL achievement files at once, compiling them in parallel on a {@link ForkJoinPool} (the common pool
+ * unless given another). A file that fails to load doesn't stop the others: every file gets a {@link Result}, holding
+ * either the achievable or the reason it couldn't be loaded, and how long loading it took.
+ *
+ * <pre>
+ * AchievementLoader.Report report = AchievementLoader.builder().build().load(Paths.get("achievements"), "*.bigal");
+ * report.getFailures().forEach(result -&gt; logger.warning(result.getName() + ": " + result.getError()));
+ * manager.getTriggerRouter().registerAll(report.getAchievables());
+ * </pre>
+ */
+public class AchievementLoader {
+    private final ForkJoinPool pool;
+    private final Function<String, UUID> uuids;
+
+    private AchievementLoader(Builder builder) {
+        this.pool = builder.pool;
+        this.uuids = builder.uuids;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Every regular file in the directory and its subdirectories
+    public Report load(Path directory) throws IOException {
+        return load(directory, "*");
+    }
+
+    // Every regular file in the directory and its subdirectories whose name matches the glob, e.g. "*.bigal"
+    public Report load(Path directory, String glob) throws IOException {
+        return run(find(directory, glob), file -> load(nameOf(directory, file), () -> read(file)));
+    }
+
+    // Sources keyed by a name of your choosing (e.g. their file name), which the results are reported under
+    public Report load(Map<String, String> sources) {
+        return run(new ArrayList<>(sources.entrySet()), source -> load(source.getKey(), source::getValue));
+    }
+
+    private <T> Report run(List<T> sources, Function<T, Result> load) {
+        long start = System.nanoTime();
+        List<ForkJoinTask<Result>> tasks = new ArrayList<>(sources.size());
+        for (T source : sources) {
+            tasks.add(pool.submit(() -> load.apply(source)));
+        }
+        List<Result> results = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<Result> task : tasks) {
+            results.add(task.join());
+        }
+        return new Report(Collections.unmodifiableList(results), System.nanoTime() - start);
+    }
+
+    private Result load(String name, SourceReader reader) {
+        long start = System.nanoTime();
+        try {
+            String source = reader.read();
+            UUID uuid = uuids == null ? null : uuids.apply(name);
+            AchievableWithMeta achievable = BigalsIntegratedGroovyAchievementLanguage.interpret(source, uuid);
+            if (achievable == null) {
+                throw new IllegalArgumentException("Unsupported syntaxVersion " + BigalsIntegratedGroovyAchievementLanguage.syntaxVersionOf(source));
+            }
+            return new Result(name, achievable, null, System.nanoTime() - start);
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Throwable e) {
+            // a failed assert in a script is an Error, but it's as much the file's fault as a compilation error
+            return new Result(name, null, e, System.nanoTime() - start);
+        }
+    }
+
+    static List<Path> find(Path directory, String glob) throws IOException {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        try (Stream<Path> walk = Files.walk(directory)) {
+            return walk.filter(Files::isRegularFile)
+                    .filter(file -> matcher.matches(file.getFileName()))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    static String nameOf(Path directory, Path file) {
+        return directory.relativize(file).toString();
+    }
+
+    static String read(Path file) throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    private interface SourceReader {
+        String read() throws IOException;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Result {
+        private final String name;
+        // null if it failed to load
+        private final AchievableWithMeta achievable;
+        // null if it loaded
+        private final Throwable error;
+        private final long loadNanos;
+
+        public boolean isLoaded() {
+            return error == null;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Report {
+        // in the order the sources were given, or sorted by path for a directory
+        private final List<Result> results;
+        private final long elapsedNanos;
+
+        public List<Result> getFailures() {
+            return results.stream().filter(result -> !result.isLoaded()).collect(Collectors.toList());
+        }
+
+        public List<AchievableWithMeta> getLoaded() {
+            return results.stream().filter(Result::isLoaded).map(Result::getAchievable).collect(Collectors.toList());
+        }
+
+        // The achievables that loaded, ready to register
+        public List<Achievable> getAchievables() {
+            return results.stream().filter(Result::isLoaded).map(result -> result.getAchievable().getAchievable()).collect(Collectors.toList());
+        }
+    }
+
+    public static class Builder {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        Function<String, UUID> uuids;
+
+        Builder() {
+        }
+
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = Objects.requireNonNull(pool, "pool");
+            return this;
+        }
+
+        // Gives each achievable the UUID for its name (e.g. UUID.nameUUIDFromBytes), so it keeps its state across restarts
+        public Builder uuids(Function<String, UUID> uuids) {
+            this.uuids = uuids;
+            return this;
+        }
+
+        public AchievementLoader build() {
+            return new AchievementLoader(this);
+        }
+    }
+}
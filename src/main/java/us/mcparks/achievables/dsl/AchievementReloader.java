@@ -0,0 +1,230 @@
+package us.mcparks.achievables.dsl;
+
+import com.google.common.hash.Hashing;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import us.mcparks.achievables.dsl.meta.AchievableWithMeta;
+import us.mcparks.achievables.framework.Achievable;
+import us.mcparks.achievables.groovy.BigAlAchievable;
+import us.mcparks.achievables.triggers.TriggerRouter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Keeps a set of BIGAL achievements registered with a {@link TriggerRouter} in step with their sources.
+ *
+ * Every {@link #reload} is given the whole set of sources, by name. Sources whose content hasn't changed are left alone;
+ * new and changed ones are compiled (in parallel, like an {@link AchievementLoader}) before anything is swapped, and
+ * then every addition, replacement and removal goes into the router in a single atomic update, so triggers keep being
+ * routed throughout and never see half a reload. A changed achievement keeps its UUID, and with it its players' stored
+ * state. If it no longer compiles, the old version stays loaded.
+ *
+ * <pre>
+ * AchievementReloader reloader = AchievementReloader.builder(manager.getTriggerRouter()).build();
+ * reloader.reload(Paths.get("achievements"), "*.bigal");
+ * // ... after the files have been edited
+ * AchievementReloader.Report report = reloader.reload(Paths.get("achievements"), "*.bigal");
+ * </pre>
+ */
+public class AchievementReloader {
+    private final TriggerRouter router;
+    private final ForkJoinPool pool;
+    private final Function<String, UUID> uuids;
+    private final Object reloadLock = new Object();
+    // replaced, never changed in place, by each reload
+    private volatile Map<String, Loaded> loaded = Collections.emptyMap();
+
+    private AchievementReloader(Builder builder) {
+        this.router = builder.router;
+        this.pool = builder.pool;
+        this.uuids = builder.uuids;
+    }
+
+    public static Builder builder(TriggerRouter router) {
+        return new Builder(router);
+    }
+
+    // Every regular file in the directory and its subdirectories whose name matches the glob, e.g. "*.bigal"
+    public Report reload(Path directory, String glob) throws IOException {
+        Map<String, String> sources = new LinkedHashMap<>();
+        for (Path file : AchievementLoader.find(directory, glob)) {
+            sources.put(AchievementLoader.nameOf(directory, file), AchievementLoader.read(file));
+        }
+        return reload(sources);
+    }
+
+    // Sources keyed by name; achievements loaded before under a name that's missing here are removed
+    public Report reload(Map<String, String> sources) {
+        synchronized (reloadLock) {
+            long start = System.nanoTime();
+            Map<String, Loaded> current = loaded;
+
+            Map<String, String> hashes = new LinkedHashMap<>();
+            Map<String, String> changed = new LinkedHashMap<>();
+            List<String> unchanged = new ArrayList<>();
+            for (Map.Entry<String, String> source : sources.entrySet()) {
+                String hash = hash(source.getValue());
+                hashes.put(source.getKey(), hash);
+                Loaded previous = current.get(source.getKey());
+                if (previous != null && previous.hash.equals(hash)) {
+                    unchanged.add(source.getKey());
+                } else {
+                    changed.put(source.getKey(), source.getValue());
+                }
+            }
+
+            AchievementLoader.Report compiled = AchievementLoader.builder()
+                    .pool(pool)
+                    .uuids(name -> {
+                        Loaded previous = current.get(name);
+                        if (previous != null) {
+                            return previous.achievable.getAchievable().getUUID();
+                        }
+                        return uuids == null ? null : uuids.apply(name);
+                    })
+                    .build()
+                    .load(changed);
+
+            Map<String, Loaded> next = new LinkedHashMap<>();
+            List<Achievable> removedAchievables = new ArrayList<>();
+            List<Achievable> addedAchievables = new ArrayList<>();
+            List<String> stale = new ArrayList<>();
+            List<String> added = new ArrayList<>();
+            List<String> replaced = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            for (String name : unchanged) {
+                next.put(name, current.get(name));
+            }
+            for (AchievementLoader.Result result : compiled.getResults()) {
+                Loaded previous = current.get(result.getName());
+                if (!result.isLoaded()) {
+                    // keep running the old version until the new one is fixed
+                    if (previous != null) {
+                        next.put(result.getName(), previous);
+                    }
+                    continue;
+                }
+                next.put(result.getName(), new Loaded(hashes.get(result.getName()), changed.get(result.getName()), result.getAchievable()));
+                addedAchievables.add(result.getAchievable().getAchievable());
+                if (previous != null) {
+                    // before the swap, so the replacement never starts from values the old version hasn't stored yet
+                    if (result.getAchievable().getAchievable() instanceof BigAlAchievable && previous.achievable.getAchievable() instanceof BigAlAchievable) {
+                        ((BigAlAchievable) result.getAchievable().getAchievable()).takeOverSharedState((BigAlAchievable) previous.achievable.getAchievable());
+                    }
+                    replaced.add(result.getName());
+                    removedAchievables.add(previous.achievable.getAchievable());
+                    stale.add(previous.source);
+                } else {
+                    added.add(result.getName());
+                }
+            }
+            for (Map.Entry<String, Loaded> previous : current.entrySet()) {
+                if (!sources.containsKey(previous.getKey())) {
+                    removed.add(previous.getKey());
+                    removedAchievables.add(previous.getValue().achievable.getAchievable());
+                    stale.add(previous.getValue().source);
+                }
+            }
+
+            // replacements share their UUID with what they replace, so they're removed and added in the same step
+            router.update(removedAchievables, addedAchievables);
+            loaded = Collections.unmodifiableMap(next);
+            // store what the old versions merged while they were still handling triggers
+            for (Achievable achievable : removedAchievables) {
+                if (achievable instanceof BigAlAchievable) {
+                    ((BigAlAchievable) achievable).flushSharedState();
+                }
+            }
+
+            // a source can be loaded under more than one name
+            Set<String> live = new HashSet<>();
+            for (Loaded entry : next.values()) {
+                live.add(entry.source);
+            }
+            stale.removeIf(live::contains);
+            if (!stale.isEmpty()) {
+                BigalsIntegratedGroovyAchievementLanguage.discard(stale);
+            }
+
+            return new Report(added, replaced, removed, unchanged, compiled.getFailures(), System.nanoTime() - start);
+        }
+    }
+
+    // The achievements loaded now, by name
+    public Map<String, AchievableWithMeta> getLoaded() {
+        Map<String, AchievableWithMeta> achievables = new LinkedHashMap<>();
+        for (Map.Entry<String, Loaded> entry : loaded.entrySet()) {
+            achievables.put(entry.getKey(), entry.getValue().achievable);
+        }
+        return achievables;
+    }
+
+    // Unregisters everything this reloader loaded
+    public void clear() {
+        reload(Collections.emptyMap());
+    }
+
+    private static String hash(String source) {
+        return Hashing.sha256().hashString(source, StandardCharsets.UTF_8).toString();
+    }
+
+    @AllArgsConstructor
+    private static class Loaded {
+        final String hash;
+        final String source;
+        final AchievableWithMeta achievable;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Report {
+        // names of the achievements that were loaded for the first time
+        private final List<String> added;
+        // names of the achievements whose new version replaced the old one
+        private final List<String> replaced;
+        // names of the achievements that were unregistered
+        private final List<String> removed;
+        private final List<String> unchanged;
+        // new or changed sources that failed to load; a changed one keeps its old version
+        private final List<AchievementLoader.Result> failures;
+        private final long elapsedNanos;
+    }
+
+    public static class Builder {
+        final TriggerRouter router;
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        Function<String, UUID> uuids;
+
+        Builder(TriggerRouter router) {
+            this.router = Objects.requireNonNull(router, "router");
+        }
+
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = Objects.requireNonNull(pool, "pool");
+            return this;
+        }
+
+        // The UUID for an achievement loaded for the first time; later versions keep whichever UUID it got
+        public Builder uuids(Function<String, UUID> uuids) {
+            this.uuids = uuids;
+            return this;
+        }
+
+        public AchievementReloader build() {
+            return new AchievementReloader(this);
+        }
+    }
+}
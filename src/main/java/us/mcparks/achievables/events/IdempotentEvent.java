@@ -0,0 +1,13 @@
+package us.mcparks.achievables.events;
+
+/**
+ * A player event that has the same effect however many times in a row it happens (e.g. "entered an area"), so a
+ * {@link us.mcparks.achievables.triggers.TriggerIngestionQueue} may collapse a run of equal ones for the same player
+ * into one.
+ */
+public interface IdempotentEvent extends PlayerEvent {
+    // Two events of the same class for the same player are duplicates if their keys are equal
+    default Object getCoalescingKey() {
+        return this;
+    }
+}
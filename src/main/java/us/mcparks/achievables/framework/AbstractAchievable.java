@@ -14,4 +14,9 @@ public abstract class AbstractAchievable implements Achievable {
     public Collection<AchievablePlayer> getApplicablePlayers() {
         return applicablePlayers != null ? applicablePlayers : Achievables.getInstance().getAchievableManager().getCurrentPlayers();
     }
+
+    @Override
+    public boolean isApplicablePlayer(AchievablePlayer player) {
+        return applicablePlayers != null ? applicablePlayers.contains(player) : Achievables.getInstance().getAchievableManager().isCurrentPlayer(player);
+    }
 }
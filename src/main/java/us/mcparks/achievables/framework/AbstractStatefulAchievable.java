@@ -1,7 +1,6 @@
 package us.mcparks.achievables.framework;
 
 import com.google.gson.reflect.TypeToken;
-import us.mcparks.achievables.utils.AchievableGsonManager;
 
 import java.lang.reflect.Type;
 import java.util.*;
@@ -10,6 +9,12 @@ public abstract class AbstractStatefulAchievable extends AbstractAchievable impl
     final String serializedInitialPlayerState;
     final String serializedInitialStaticState;
 
+    // parsed lazily rather than in the constructor, since Gson fills in the serialized fields after construction
+    private transient volatile StateTemplate initialPlayerStateTemplate;
+    private transient volatile StateTemplate initialStaticStateTemplate;
+    private transient volatile StateSchema playerStateSchema;
+    private transient volatile StateSchema staticStateSchema;
+
     static Type stateType = new TypeToken<Map<String, Object>>() {
     }.getType();
 
@@ -19,11 +24,44 @@ public abstract class AbstractStatefulAchievable extends AbstractAchievable impl
     }
 
 
+    public StateTemplate getPlayerStateTemplate() {
+        StateTemplate template = initialPlayerStateTemplate;
+        if (template == null) {
+            template = initialPlayerStateTemplate = StateTemplate.parse(serializedInitialPlayerState, stateType);
+        }
+        return template;
+    }
+
+    public StateTemplate getStaticStateTemplate() {
+        StateTemplate template = initialStaticStateTemplate;
+        if (template == null) {
+            template = initialStaticStateTemplate = StateTemplate.parse(serializedInitialStaticState, stateType);
+        }
+        return template;
+    }
+
+    // The slot layout of player state records, as given by the keys and types of the initial player state
+    public StateSchema getPlayerStateSchema() {
+        StateSchema schema = playerStateSchema;
+        if (schema == null) {
+            schema = playerStateSchema = StateSchema.of(getPlayerStateTemplate());
+        }
+        return schema;
+    }
+
+    public StateSchema getStaticStateSchema() {
+        StateSchema schema = staticStateSchema;
+        if (schema == null) {
+            schema = staticStateSchema = StateSchema.of(getStaticStateTemplate());
+        }
+        return schema;
+    }
+
     public Map<String, Object> getInitialPlayerState() {
-        return AchievableGsonManager.getGson().fromJson(serializedInitialPlayerState, stateType);
+        return getPlayerStateSchema().newRecord();
     }
 
     public Map<String, Object> getInitialStaticState() {
-        return AchievableGsonManager.getGson().fromJson(serializedInitialStaticState, stateType);
+        return getStaticStateSchema().newRecord();
     }
 }
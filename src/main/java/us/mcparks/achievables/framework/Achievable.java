@@ -7,12 +7,12 @@ import com.google.common.collect.Sets;
 import com.google.gson.*;
 import us.mcparks.achievables.Achievables;
 import us.mcparks.achievables.triggers.AchievableTrigger;
-import us.mcparks.achievables.events.PlayerEvent;
-import us.mcparks.achievables.triggers.EventAchievableTrigger;
+import us.mcparks.achievables.triggers.TriggerKey;
 import us.mcparks.achievables.utils.AchievableGsonManager;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.function.Consumer;
@@ -29,31 +29,94 @@ public interface Achievable {
     // Processes the given trigger for the given player
     void process(AchievablePlayer player, AchievableTrigger trigger, boolean savePlayerState);
 
-    // Processes the given trigger for all players
+    // Processes the given trigger for all players, or only for its target player if it has one
     default void process(AchievableTrigger trigger) {
-        for (AchievablePlayer player : getApplicablePlayers()) {
-            try {
-                // if this trigger is player specific and not for this player, skip this player
-                if (((EventAchievableTrigger) trigger).getEvent() instanceof PlayerEvent &&
-                        !((PlayerEvent) ((EventAchievableTrigger) trigger).getEvent()).getApplicablePlayer().equals(player)) {
-                    continue;
+        boolean sharedStateChanged = processShared(trigger);
+
+        if (handlesPlayers(trigger)) {
+            AchievablePlayer target = trigger.getTargetPlayer();
+            if (target != null) {
+                if (isApplicablePlayer(target)) {
+                    sharedStateChanged |= processPlayer(target, trigger);
                 }
-                // if not satisfied, process this trigger for the player and check if it's satisfied
-                if (!Achievables.getInstance().getAchievableManager().isCompleted(this, player)) {
-                    process(player, trigger, true);
-
-                    // if that made us satisfy the achievement, complete it for the player
-                    if (isSatisfied(player)) {
-                        Achievables.getInstance().getAchievableManager().completeAchievable(this, player);
-                    }
-                } else {
-                    // even if it's satisfied, we still need to process the trigger just in case there is static state -- we dont need to save the player state though!
-                    process(player, trigger, false);
+            } else {
+                for (AchievablePlayer player : getApplicablePlayers()) {
+                    sharedStateChanged |= processPlayer(player, trigger);
                 }
-            } catch (Exception ex) {
-                Achievables.getInstance().getLogger().log(Level.SEVERE, "Error processing trigger " + trigger + " for player " + player + "in achievable " + getUUID().toString(), ex);
             }
         }
+
+        if (sharedStateChanged) {
+            for (AchievablePlayer player : getApplicablePlayers()) {
+                reevaluatePlayer(player);
+            }
+        }
+    }
+
+    // Processes a batch of triggers (all of the same type) in order
+    default void process(List<AchievableTrigger> triggers) {
+        for (AchievableTrigger trigger : triggers) {
+            process(trigger);
+        }
+    }
+
+    /*
+     * process(trigger) is made of the phases below, so a TriggerExecutor can run them on different threads: processShared
+     * once per trigger, then processPlayer for each player (players in parallel, but each player's triggers in order), and
+     * reevaluatePlayer for every player whenever one of the other two changed state that all players can see.
+     */
+
+    // Processes the parts of the trigger that aren't about any one player, returning whether that changed shared state
+    default boolean processShared(AchievableTrigger trigger) {
+        return false;
+    }
+
+    // Whether processPlayer needs to be called for this trigger at all
+    default boolean handlesPlayers(AchievableTrigger trigger) {
+        return true;
+    }
+
+    // The only values of an event property this listens for, for triggers of the type, or null if it listens for them all
+    default TriggerKey getTriggerKey(AchievableTrigger.Type type) {
+        return null;
+    }
+
+    /**
+     * Processes the given trigger for one player, completing this Achievable for them if that satisfies it.
+     *
+     * @return whether this changed state shared by all players, which means every player has to be reevaluated
+     */
+    default boolean processPlayer(AchievablePlayer player, AchievableTrigger trigger) {
+        try {
+            // if not satisfied, process this trigger for the player and check if it's satisfied
+            if (!Achievables.getInstance().getAchievableManager().isCompleted(this, player)) {
+                process(player, trigger, true);
+
+                // if that made us satisfy the achievement, complete it for the player
+                if (isSatisfied(player)) {
+                    Achievables.getInstance().getAchievableManager().completeAchievable(this, player);
+                    Achievables.getInstance().getMetrics().achievableCompleted(this, player);
+                }
+            } else {
+                // even if it's satisfied, we still need to process the trigger just in case there is static state -- we dont need to save the player state though!
+                process(player, trigger, false);
+            }
+        } catch (Exception ex) {
+            Achievables.getInstance().getLogger().log(Level.SEVERE, "Error processing trigger " + trigger + " for player " + player + "in achievable " + getUUID().toString(), ex);
+        }
+        return false;
+    }
+
+    // Completes this Achievable for the player if it's now satisfied, e.g. after shared state changed
+    default void reevaluatePlayer(AchievablePlayer player) {
+        try {
+            if (!Achievables.getInstance().getAchievableManager().isCompleted(this, player) && isSatisfied(player)) {
+                Achievables.getInstance().getAchievableManager().completeAchievable(this, player);
+                Achievables.getInstance().getMetrics().achievableCompleted(this, player);
+            }
+        } catch (Exception ex) {
+            Achievables.getInstance().getLogger().log(Level.SEVERE, "Error reevaluating player " + player + " in achievable " + getUUID().toString(), ex);
+        }
     }
 
     /**
@@ -67,6 +130,10 @@ public interface Achievable {
 
     void setApplicablePlayers(Collection<AchievablePlayer> players);
 
+    default boolean isApplicablePlayer(AchievablePlayer player) {
+        return getApplicablePlayers().contains(player);
+    }
+
     default void addApplicablePlayer(AchievablePlayer player) {
         getApplicablePlayers().add(player);
     }
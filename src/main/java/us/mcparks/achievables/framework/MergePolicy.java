@@ -0,0 +1,98 @@
+package us.mcparks.achievables.framework;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * How writes to a shared value are combined when handlers run at the same time, instead of the last one to be stored
+ * replacing the others.
+ *
+ * A handler's write is turned into a change against the value it read (e.g. "add 1", or "add this element"), which is
+ * then applied to whatever the value has become in the meantime. Every policy but {@link #REGISTER} gives the same result
+ * whatever order the writes are applied in.
+ */
+public enum MergePolicy {
+    // a number handlers add to and subtract from
+    COUNTER {
+        @Override
+        public Object merge(Object base, Object written, Object current) {
+            if (!(written instanceof Number)) {
+                return written;
+            }
+            Number from = base instanceof Number ? (Number) base : 0L;
+            Number to = current instanceof Number ? (Number) current : 0L;
+            if (StateSchema.isIntegral(from) && StateSchema.isIntegral(written) && StateSchema.isIntegral(to)) {
+                return to.longValue() + (((Number) written).longValue() - from.longValue());
+            }
+            return to.doubleValue() + (((Number) written).doubleValue() - from.doubleValue());
+        }
+    },
+    // the highest value written
+    MAX {
+        @Override
+        public Object merge(Object base, Object written, Object current) {
+            return current == null || compare(written, current) > 0 ? written : current;
+        }
+    },
+    // the lowest value written
+    MIN {
+        @Override
+        public Object merge(Object base, Object written, Object current) {
+            return current == null || compare(written, current) < 0 ? written : current;
+        }
+    },
+    // a list of distinct elements; what a handler added is added and what it removed is removed
+    SET {
+        @Override
+        public Object merge(Object base, Object written, Object current) {
+            Collection<?> from = base instanceof Collection ? (Collection<?>) base : Collections.emptyList();
+            Collection<?> to = written instanceof Collection ? (Collection<?>) written : Collections.emptyList();
+            Set<Object> merged = current instanceof Collection ? new LinkedHashSet<>((Collection<?>) current) : new LinkedHashSet<>();
+            for (Object element : from) {
+                if (!to.contains(element)) {
+                    merged.remove(element);
+                }
+            }
+            for (Object element : to) {
+                if (!from.contains(element)) {
+                    merged.add(element);
+                }
+            }
+            return new ArrayList<>(merged);
+        }
+    },
+    // the last value written
+    REGISTER {
+        @Override
+        public Object merge(Object base, Object written, Object current) {
+            return written;
+        }
+    };
+
+    /**
+     * The value after applying a handler's write to it.
+     *
+     * @param base the value the handler read
+     * @param written the value the handler left
+     * @param current the value now, which other handlers may have changed since it was read
+     */
+    public abstract Object merge(Object base, Object written, Object current);
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            if (StateSchema.isIntegral(a) && StateSchema.isIntegral(b)) {
+                return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+            }
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        if (a instanceof Comparable && b != null && a.getClass() == b.getClass()) {
+            return ((Comparable<Object>) a).compareTo(b);
+        }
+        // values that can't be ordered leave the current one as it is
+        return 0;
+    }
+}
@@ -0,0 +1,170 @@
+package us.mcparks.achievables.framework;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The live values of an achievable's shared keys that have a {@link MergePolicy}, kept in memory in between writes to
+ * the stored shared state.
+ *
+ * A handler's write to one of these keys is merged into its live value on its own ({@link #merge}), atomically but
+ * without locking the rest of the shared state, so handlers running at the same time neither wait for each other nor lose
+ * each other's updates. Scripts see the live values laid over the stored state ({@link #read}). The merged values are
+ * only written to the stored state in batches ({@link #drain}), at most once per flush interval, rather than on every
+ * write. A key's live value is taken from the stored state the first time it's used, and from then on wins over it.
+ */
+public final class MergeableSharedState {
+    private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "achievables-shared-state");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final StateSchema schema;
+    private final ImmutableMap<String, MergePolicy> policies;
+    private final boolean coversAll;
+    // frozen values; a script is given its own copy of lists
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    public MergeableSharedState(StateSchema schema, Map<String, MergePolicy> policies) {
+        this.schema = schema;
+        this.policies = ImmutableMap.copyOf(policies);
+        this.coversAll = policies.keySet().containsAll(schema.getNames());
+    }
+
+    public MergePolicy getPolicy(String key) {
+        return policies.get(key);
+    }
+
+    // Whether an achievable with this shared state layout and these policies can use these live values
+    public boolean fits(StateSchema schema, Map<String, MergePolicy> policies) {
+        return this.policies.equals(policies) && this.schema.getLayout().equals(schema.getLayout());
+    }
+
+    // Whether every key of the shared state has a policy, so handlers never need to lock it
+    public boolean coversAll() {
+        return coversAll;
+    }
+
+    // A record of the stored shared state with the live values laid over it, for a script to read and write
+    public Snapshot read(Map<String, Object> stored) {
+        StateRecord record = schema.newRecord(stored);
+        Map<String, Object> bases = new HashMap<>(policies.size() * 2);
+        for (String key : policies.keySet()) {
+            Object base = liveValue(key, stored);
+            if (base != null) {
+                bases.put(key, base);
+                record.load(Collections.singletonMap(key, base));
+            }
+        }
+        return new Snapshot(record, bases);
+    }
+
+    /**
+     * Merges what a script changed in the snapshot's record into the live values, and returns the keys it merged. Changes
+     * to keys without a policy are left for the caller to store. A key with a policy can't be removed or set to null;
+     * doing so does nothing.
+     */
+    public Set<String> merge(Snapshot snapshot) {
+        Set<String> merged = new HashSet<>();
+        for (String key : snapshot.record.getModifiedKeys()) {
+            MergePolicy policy = policies.get(key);
+            if (policy == null) {
+                continue;
+            }
+            merged.add(key);
+            Object written = snapshot.record.get(key);
+            if (written != null) {
+                Object base = snapshot.bases.get(key);
+                values.merge(key, StateTemplate.freeze(written), (current, ignored) -> StateTemplate.freeze(policy.merge(base, written, current)));
+                dirty.add(key);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * The stored state with every live value written into it, and the keys merged since the last drain as its changes, or
+     * null if nothing was. Those keys then count as stored; put them back with {@link #markDirty} if storing fails.
+     */
+    public StateDelta drain(Map<String, Object> stored) {
+        if (dirty.isEmpty()) {
+            return null;
+        }
+        Set<String> keys = new HashSet<>();
+        // a key merged again from here on is stored by the next drain
+        for (Iterator<String> iterator = dirty.iterator(); iterator.hasNext(); ) {
+            keys.add(iterator.next());
+            iterator.remove();
+        }
+        StateRecord record = schema.newRecord(stored);
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            record.load(Collections.singletonMap(value.getKey(), value.getValue()));
+        }
+        return StateDelta.of(record, keys);
+    }
+
+    // The key's live value (immutable), or null if it hasn't been used yet and the stored value still stands
+    public Object getLiveValue(String key) {
+        return values.get(key);
+    }
+
+    public Map<String, Object> getLiveValues() {
+        return ImmutableMap.copyOf(values);
+    }
+
+    public void markDirty(Set<String> keys) {
+        dirty.addAll(keys);
+    }
+
+    public boolean isDirty() {
+        return !dirty.isEmpty();
+    }
+
+    // Runs the flush once the delay is up, unless one is already waiting to run
+    public void scheduleFlush(Runnable flush, long delay, TimeUnit unit) {
+        if (flushScheduled.compareAndSet(false, true)) {
+            flusher.schedule(() -> {
+                flushScheduled.set(false);
+                flush.run();
+            }, delay, unit);
+        }
+    }
+
+    private Object liveValue(String key, Map<String, Object> stored) {
+        Object value = values.get(key);
+        if (value != null) {
+            return value;
+        }
+        Object initial = stored != null && stored.containsKey(key) ? stored.get(key) : schema.getTemplate().copyOf(key);
+        return values.computeIfAbsent(key, k -> StateTemplate.freeze(initial));
+    }
+
+    public static final class Snapshot {
+        private final StateRecord record;
+        // the live value of each key with a policy when the snapshot was taken
+        private final Map<String, Object> bases;
+
+        Snapshot(StateRecord record, Map<String, Object> bases) {
+            this.record = record;
+            this.bases = bases;
+        }
+
+        public StateRecord getRecord() {
+            return record;
+        }
+    }
+}
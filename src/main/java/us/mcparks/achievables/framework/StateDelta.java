@@ -0,0 +1,99 @@
+package us.mcparks.achievables.framework;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The keys an event handler changed in a state map, along with the whole state they're part of.
+ *
+ * Storage that can update single fields only needs {@link #getChangedValues()} and {@link #getRemovedKeys()}; storage
+ * that can't just saves {@link #getState()}. A "full" delta (from a plain {@code setPlayerState}, or a state reset)
+ * replaces the whole state, so every key counts as changed.
+ */
+public final class StateDelta {
+    private final Map<String, Object> state;
+    // null when the whole state is replaced
+    private final Set<String> changedKeys;
+
+    private StateDelta(Map<String, Object> state, Set<String> changedKeys) {
+        this.state = state;
+        this.changedKeys = changedKeys;
+    }
+
+    // The keys the map has recorded as modified
+    public static StateDelta of(TrackedStateMap state) {
+        return new StateDelta(state, state.getModifiedKeys());
+    }
+
+    public static StateDelta of(Map<String, Object> state, Set<String> changedKeys) {
+        return new StateDelta(state, changedKeys);
+    }
+
+    public static StateDelta full(Map<String, Object> state) {
+        return new StateDelta(state, null);
+    }
+
+    // The whole state, with the changes applied
+    public Map<String, Object> getState() {
+        return state;
+    }
+
+    public boolean isFull() {
+        return changedKeys == null;
+    }
+
+    public boolean isEmpty() {
+        return changedKeys != null && changedKeys.isEmpty();
+    }
+
+    // Every changed key, including removed ones
+    public Set<String> getChangedKeys() {
+        return changedKeys == null ? state.keySet() : Collections.unmodifiableSet(changedKeys);
+    }
+
+    // The new values of the changed keys that are still in the state
+    public Map<String, Object> getChangedValues() {
+        if (changedKeys == null) {
+            return state;
+        }
+        Map<String, Object> values = new HashMap<>();
+        for (String key : changedKeys) {
+            if (state.containsKey(key)) {
+                values.put(key, state.get(key));
+            }
+        }
+        return values;
+    }
+
+    // Changed keys that are no longer in the state
+    public Set<String> getRemovedKeys() {
+        if (changedKeys == null) {
+            return Collections.emptySet();
+        }
+        Set<String> removed = new HashSet<>();
+        for (String key : changedKeys) {
+            if (!state.containsKey(key)) {
+                removed.add(key);
+            }
+        }
+        return removed;
+    }
+
+    // This delta followed by a later one to the same state, as one delta
+    public StateDelta merge(StateDelta later) {
+        if (isFull() || later.isFull()) {
+            return full(later.state);
+        }
+        Set<String> keys = new HashSet<>(changedKeys);
+        keys.addAll(later.changedKeys);
+        return new StateDelta(later.state, keys);
+    }
+
+    @Override
+    public String toString() {
+        return isFull() ? "StateDelta{full}" : "StateDelta" + changedKeys;
+    }
+}
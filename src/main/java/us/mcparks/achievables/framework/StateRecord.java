@@ -0,0 +1,404 @@
+package us.mcparks.achievables.framework;
+
+import java.util.*;
+
+/**
+ * A state map laid out by a {@link StateSchema}: boolean and numeric slots live unboxed in a {@code long[]}, other
+ * values in an {@code Object[]}, and the key names are shared with every other record of the same schema.
+ *
+ * Scripts still see an ordinary map ({@code state.foo}), and the typed accessors let compiled code skip the boxing.
+ * A value that doesn't fit its slot's type (or a key the schema doesn't have) goes into a small overflow map instead,
+ * so scripts are never restricted by the layout.
+ */
+public final class StateRecord extends AbstractMap<String, Object> implements TrackedStateMap {
+    private final StateSchema schema;
+    private final long[] primitives;
+    private final Object[] objects;
+    // lazily allocated; most records never need them
+    private BitSet removed;
+    private Map<String, Object> overflow;
+    private BitSet modifiedSlots;
+    private Set<String> modifiedOverflowKeys;
+    // copies of the lists and maps handed out, as they were when first read, to find the ones changed in place
+    private Map<String, Object> readValues;
+
+    StateRecord(StateSchema schema) {
+        this.schema = schema;
+        this.primitives = schema.defaultPrimitives.clone();
+        this.objects = schema.defaultObjects == null ? null : schema.defaultObjects.clone();
+    }
+
+    public StateSchema getSchema() {
+        return schema;
+    }
+
+    // An untracked copy of this record
+    public StateRecord copy() {
+        StateRecord copy = new StateRecord(schema);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    void copyFrom(StateRecord other) {
+        System.arraycopy(other.primitives, 0, primitives, 0, primitives.length);
+        if (objects != null) {
+            for (int slot = 0; slot < objects.length; slot++) {
+                Object value = other.objects[slot];
+                // never share a mutable value between records (the schema's frozen defaults are fine to share)
+                boolean mutable = value != schema.defaultObjects[slot] && (value instanceof Map || value instanceof Collection);
+                objects[slot] = mutable ? StateTemplate.thaw(value) : value;
+            }
+        }
+        removed = other.removed == null ? null : (BitSet) other.removed.clone();
+        if (other.overflow != null) {
+            overflow = new HashMap<>();
+            for (Map.Entry<String, Object> entry : other.overflow.entrySet()) {
+                overflow.put(entry.getKey(), StateTemplate.thaw(entry.getValue()));
+            }
+        }
+    }
+
+    // Puts copies of the values in without marking anything as modified
+    void load(Map<String, ?> values) {
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            store(entry.getKey(), StateTemplate.thaw(entry.getValue()));
+        }
+    }
+
+    public boolean getBoolean(int slot) {
+        if (isShadowed(slot)) {
+            return Boolean.TRUE.equals(peek(schema.getName(slot)));
+        }
+        return primitives[slot] != 0L;
+    }
+
+    public long getLong(int slot) {
+        if (isShadowed(slot)) {
+            Object value = peek(schema.getName(slot));
+            return value instanceof Number ? ((Number) value).longValue() : 0L;
+        }
+        return primitives[slot];
+    }
+
+    public double getDouble(int slot) {
+        if (isShadowed(slot)) {
+            Object value = peek(schema.getName(slot));
+            return value instanceof Number ? ((Number) value).doubleValue() : 0D;
+        }
+        return Double.longBitsToDouble(primitives[slot]);
+    }
+
+    // The setters return the value they were given, like the assignment they're compiled from
+    public boolean setBoolean(int slot, boolean value) {
+        setBits(slot, value ? 1L : 0L);
+        return value;
+    }
+
+    public long setLong(int slot, long value) {
+        setBits(slot, value);
+        return value;
+    }
+
+    public double setDouble(int slot, double value) {
+        setBits(slot, Double.doubleToRawLongBits(value));
+        return value;
+    }
+
+    // Adds to the slot's value and returns the value before, like a postfix ++ or --
+    public long getAndAddLong(int slot, long delta) {
+        long value = getLong(slot);
+        setLong(slot, value + delta);
+        return value;
+    }
+
+    public double getAndAddDouble(int slot, double delta) {
+        double value = getDouble(slot);
+        setDouble(slot, value + delta);
+        return value;
+    }
+
+    // put() returning the value it was given rather than the previous one, like an assignment
+    public Object set(String key, Object value) {
+        put(key, value);
+        return value;
+    }
+
+    private void setBits(int slot, long bits) {
+        if (primitives[slot] != bits || isShadowed(slot)) {
+            unshadow(slot);
+            primitives[slot] = bits;
+            markModified(slot);
+        }
+    }
+
+    private boolean isShadowed(int slot) {
+        return (removed != null && removed.get(slot)) || (overflow != null && overflow.containsKey(schema.getName(slot)));
+    }
+
+    private void unshadow(int slot) {
+        if (removed != null) {
+            removed.clear(slot);
+        }
+        if (overflow != null) {
+            overflow.remove(schema.getName(slot));
+        }
+    }
+
+    private void markModified(int slot) {
+        if (modifiedSlots == null) {
+            modifiedSlots = new BitSet(primitives.length);
+        }
+        modifiedSlots.set(slot);
+    }
+
+    private void markModified(String key) {
+        int slot = schema.indexOf(key);
+        if (slot >= 0) {
+            markModified(slot);
+            return;
+        }
+        if (modifiedOverflowKeys == null) {
+            modifiedOverflowKeys = new HashSet<>();
+        }
+        modifiedOverflowKeys.add(key);
+    }
+
+    // The slot's value, copying the schema's shared default first if it's a list or map
+    private Object readSlot(int slot) {
+        StateSchema.SlotType type = schema.getType(slot);
+        if (type != StateSchema.SlotType.OBJECT) {
+            return StateSchema.fromBits(type, primitives[slot]);
+        }
+        Object value = objects[slot];
+        if (value != null && value == schema.defaultObjects[slot] && (value instanceof Map || value instanceof Collection)) {
+            value = objects[slot] = StateTemplate.thaw(value);
+        }
+        return value;
+    }
+
+    // Stores the value in its slot if it fits there, or in the overflow map if it doesn't
+    private void store(String key, Object value) {
+        int slot = schema.indexOf(key);
+        if (slot >= 0 && StateSchema.fits(schema.getType(slot), value)) {
+            unshadow(slot);
+            if (schema.getType(slot) == StateSchema.SlotType.OBJECT) {
+                objects[slot] = value;
+            } else {
+                primitives[slot] = StateSchema.toBits(schema.getType(slot), value);
+            }
+        } else {
+            if (overflow == null) {
+                overflow = new HashMap<>();
+            }
+            overflow.put(key, value);
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object value;
+        if (overflow != null && overflow.containsKey(key)) {
+            value = overflow.get(key);
+        } else {
+            int slot = schema.indexOf(key);
+            if (slot < 0 || (removed != null && removed.get(slot))) {
+                return null;
+            }
+            value = readSlot(slot);
+        }
+        return remember((String) key, value);
+    }
+
+    // A script can change a list or map in place without ever calling put, so keep a copy to compare it with later
+    private Object remember(String key, Object value) {
+        if (value instanceof Collection || value instanceof Map) {
+            if (readValues == null) {
+                readValues = new HashMap<>();
+            }
+            readValues.putIfAbsent(key, StateTemplate.freeze(value));
+        }
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (overflow != null && overflow.containsKey(key)) {
+            return true;
+        }
+        int slot = schema.indexOf(key);
+        return slot >= 0 && (removed == null || !removed.get(slot));
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        boolean existed = containsKey(key);
+        Object previous = existed ? peek(key) : null;
+        store(key, value);
+        if (!existed || !Objects.equals(previous, value)) {
+            markModified(key);
+        }
+        return previous;
+    }
+
+    // get() without the modification tracking
+    private Object peek(Object key) {
+        if (overflow != null && overflow.containsKey(key)) {
+            return overflow.get(key);
+        }
+        int slot = schema.indexOf(key);
+        return slot < 0 || (removed != null && removed.get(slot)) ? null : readSlot(slot);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (!containsKey(key)) {
+            return null;
+        }
+        Object previous = peek(key);
+        if (overflow != null) {
+            overflow.remove(key);
+        }
+        int slot = schema.indexOf(key);
+        if (slot >= 0) {
+            if (removed == null) {
+                removed = new BitSet(primitives.length);
+            }
+            removed.set(slot);
+        }
+        markModified((String) key);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        for (String key : new ArrayList<>(keySet())) {
+            remove(key);
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = primitives.length - (removed == null ? 0 : removed.cardinality());
+        if (overflow != null) {
+            for (String key : overflow.keySet()) {
+                int slot = schema.indexOf(key);
+                if (slot < 0 || (removed != null && removed.get(slot))) {
+                    size++;
+                }
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Set<String> getModifiedKeys() {
+        if (modifiedSlots == null && modifiedOverflowKeys == null && readValues == null) {
+            return Collections.emptySet();
+        }
+        Set<String> keys = new HashSet<>();
+        if (readValues != null) {
+            for (Map.Entry<String, Object> read : readValues.entrySet()) {
+                if (!Objects.equals(read.getValue(), StateTemplate.freeze(peek(read.getKey())))) {
+                    keys.add(read.getKey());
+                }
+            }
+        }
+        if (modifiedSlots != null) {
+            for (int slot = modifiedSlots.nextSetBit(0); slot >= 0; slot = modifiedSlots.nextSetBit(slot + 1)) {
+                keys.add(schema.getName(slot));
+            }
+        }
+        if (modifiedOverflowKeys != null) {
+            keys.addAll(modifiedOverflowKeys);
+        }
+        return keys;
+    }
+
+    @Override
+    public boolean isModified() {
+        if ((modifiedSlots != null && !modifiedSlots.isEmpty()) || (modifiedOverflowKeys != null && !modifiedOverflowKeys.isEmpty())) {
+            return true;
+        }
+        return readValues != null && !getModifiedKeys().isEmpty();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<Entry<String, Object>>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                List<Entry<String, Object>> entries = new ArrayList<>(size());
+                for (int slot = 0; slot < primitives.length; slot++) {
+                    String name = schema.getName(slot);
+                    if ((removed == null || !removed.get(slot)) && (overflow == null || !overflow.containsKey(name))) {
+                        entries.add(new RecordEntry(name));
+                    }
+                }
+                if (overflow != null) {
+                    for (String key : overflow.keySet()) {
+                        entries.add(new RecordEntry(key));
+                    }
+                }
+                Iterator<Entry<String, Object>> iterator = entries.iterator();
+                return new Iterator<Entry<String, Object>>() {
+                    Entry<String, Object> current;
+
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, Object> next() {
+                        return current = iterator.next();
+                    }
+
+                    @Override
+                    public void remove() {
+                        StateRecord.this.remove(current.getKey());
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return StateRecord.this.size();
+            }
+        };
+    }
+
+    private class RecordEntry implements Entry<String, Object> {
+        final String key;
+
+        RecordEntry(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public Object getValue() {
+            return remember(key, peek(key));
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return put(key, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry<?, ?> other = (Entry<?, ?>) o;
+            return key.equals(other.getKey()) && Objects.equals(peek(key), other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(peek(key));
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package us.mcparks.achievables.framework;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * The fixed layout of an achievable's state: one named, typed slot per key of its initial state, with the initial
+ * value as the slot's default. Booleans and numbers get primitive slots; everything else is stored as an object.
+ *
+ * {@link StateRecord}s are laid out according to a schema, so every record of an achievable shares the key names and
+ * types and only carries its values.
+ */
+public final class StateSchema {
+    public enum SlotType {
+        BOOLEAN, LONG, DOUBLE, OBJECT
+    }
+
+    private final String[] names;
+    private final SlotType[] types;
+    private final Map<String, Integer> indexes;
+    final long[] defaultPrimitives;
+    // null unless there is at least one OBJECT slot
+    final Object[] defaultObjects;
+    private final StateTemplate template;
+
+    private StateSchema(StateTemplate template) {
+        this.template = template;
+        int size = template.keySet().size();
+        this.names = new String[size];
+        this.types = new SlotType[size];
+        this.indexes = new HashMap<>(size * 2);
+        this.defaultPrimitives = new long[size];
+        Object[] defaultObjects = null;
+
+        int slot = 0;
+        for (String name : template.keySet()) {
+            Object value = template.copyOf(name);
+            SlotType type = typeOf(value);
+            names[slot] = name;
+            types[slot] = type;
+            indexes.put(name, slot);
+            if (type == SlotType.OBJECT) {
+                if (defaultObjects == null) {
+                    defaultObjects = new Object[size];
+                }
+                // keep the template's immutable value; records copy it the first time it's read
+                defaultObjects[slot] = template.getFrozen(name);
+            } else {
+                defaultPrimitives[slot] = toBits(type, value);
+            }
+            slot++;
+        }
+        this.defaultObjects = defaultObjects;
+    }
+
+    public static StateSchema of(StateTemplate template) {
+        return new StateSchema(template);
+    }
+
+    // Infers a schema from an initial state, e.g. the one a BIGAL state {} or shared {} block produced
+    public static StateSchema infer(Map<String, Object> initialState) {
+        return of(StateTemplate.of(initialState));
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    // The slot holding the key, or -1 if the key isn't part of the schema
+    public int indexOf(Object name) {
+        Integer index = indexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    public String getName(int slot) {
+        return names[slot];
+    }
+
+    public SlotType getType(int slot) {
+        return types[slot];
+    }
+
+    public SlotType getType(String name) {
+        int slot = indexOf(name);
+        return slot < 0 ? null : types[slot];
+    }
+
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    // The slots as "name:TYPE" pairs in order, e.g. "rides:LONG,rodeSpace:BOOLEAN"
+    public String getLayout() {
+        return layoutOf(Arrays.asList(names), Arrays.asList(types));
+    }
+
+    public static String layoutOf(List<String> names, List<SlotType> types) {
+        StringJoiner layout = new StringJoiner(",");
+        for (int slot = 0; slot < names.size(); slot++) {
+            layout.add(names.get(slot) + ":" + types.get(slot));
+        }
+        return layout.toString();
+    }
+
+    StateTemplate getTemplate() {
+        return template;
+    }
+
+    // A record holding this schema's default values
+    public StateRecord newRecord() {
+        return new StateRecord(this);
+    }
+
+    // A record holding the given values, falling back to this schema's defaults for any key they don't have
+    public StateRecord newRecord(Map<String, ?> values) {
+        StateRecord record = new StateRecord(this);
+        if (values instanceof StateRecord && ((StateRecord) values).getSchema() == this) {
+            record.copyFrom((StateRecord) values);
+        } else if (values != null) {
+            record.load(values);
+        }
+        return record;
+    }
+
+    static SlotType typeOf(Object value) {
+        if (value instanceof Boolean) {
+            return SlotType.BOOLEAN;
+        } else if (isIntegral(value)) {
+            return SlotType.LONG;
+        } else if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            return SlotType.DOUBLE;
+        }
+        return SlotType.OBJECT;
+    }
+
+    static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte
+                || (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64);
+    }
+
+    // Whether the value can be stored in a slot of the given type without losing anything
+    static boolean fits(SlotType type, Object value) {
+        switch (type) {
+            case BOOLEAN:
+                return value instanceof Boolean;
+            case LONG:
+                return isIntegral(value);
+            case DOUBLE:
+                return value instanceof Number;
+            default:
+                return true;
+        }
+    }
+
+    static long toBits(SlotType type, Object value) {
+        switch (type) {
+            case BOOLEAN:
+                return (Boolean) value ? 1L : 0L;
+            case LONG:
+                return ((Number) value).longValue();
+            case DOUBLE:
+                return Double.doubleToRawLongBits(((Number) value).doubleValue());
+            default:
+                throw new IllegalArgumentException("Object slots have no primitive representation");
+        }
+    }
+
+    static Object fromBits(SlotType type, long bits) {
+        switch (type) {
+            case BOOLEAN:
+                return bits != 0L;
+            case LONG:
+                return bits;
+            case DOUBLE:
+                return Double.longBitsToDouble(bits);
+            default:
+                throw new IllegalArgumentException("Object slots have no primitive representation");
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package us.mcparks.achievables.framework;
+
+import us.mcparks.achievables.utils.AchievableGsonManager;
+
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * An achievable's initial state, parsed from JSON once and then never modified.
+ *
+ * {@link StateSchema} lays out {@link StateRecord}s from a template; records share the template's values and only copy
+ * lists and maps once they're used, so resetting a player or filling in a missing key doesn't re-parse anything.
+ */
+public final class StateTemplate {
+    private final Map<String, Object> values;
+
+    private StateTemplate(Map<String, Object> values) {
+        this.values = values;
+    }
+
+    public static StateTemplate parse(String serializedState, Type stateType) {
+        Map<String, Object> parsed = AchievableGsonManager.getGson().fromJson(serializedState, stateType);
+        return of(parsed);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static StateTemplate of(Map<String, Object> state) {
+        return new StateTemplate(state == null ? Collections.emptyMap() : (Map<String, Object>) freeze(state));
+    }
+
+    public Set<String> keySet() {
+        return values.keySet();
+    }
+
+    public boolean containsKey(String key) {
+        return values.containsKey(key);
+    }
+
+    // The template's value for the key; lists and maps are returned as fresh mutable copies
+    public Object copyOf(Object key) {
+        return thaw(values.get(key));
+    }
+
+    // The template's own (immutable) value for the key
+    Object getFrozen(String key) {
+        return values.get(key);
+    }
+
+    // An immutable copy of a state value, all the way down
+    public static Object freeze(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(String.valueOf(entry.getKey()), freeze(entry.getValue()));
+            }
+            return Collections.unmodifiableMap(copy);
+        } else if (value instanceof Collection) {
+            List<Object> copy = new ArrayList<>(((Collection<?>) value).size());
+            for (Object element : (Collection<?>) value) {
+                copy.add(freeze(element));
+            }
+            return Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+
+    static Object thaw(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(String.valueOf(entry.getKey()), thaw(entry.getValue()));
+            }
+            return copy;
+        } else if (value instanceof List) {
+            List<Object> copy = new ArrayList<>(((List<?>) value).size());
+            for (Object element : (List<?>) value) {
+                copy.add(thaw(element));
+            }
+            return copy;
+        } else if (value instanceof Set) {
+            Set<Object> copy = new LinkedHashSet<>();
+            for (Object element : (Set<?>) value) {
+                copy.add(thaw(element));
+            }
+            return copy;
+        }
+        return value;
+    }
+}
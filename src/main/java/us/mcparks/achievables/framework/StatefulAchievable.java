@@ -16,6 +16,8 @@ public interface StatefulAchievable extends Achievable {
         try {
             if (state == null) {
                 Achievables.getInstance().getAchievableManager().initializeStaticState(this);
+                // initializing may have loaded a stored state rather than the initial one
+                state = Achievables.getInstance().getAchievableManager().getStaticState(this);
             }
 
         } catch (ExecutionException e) {
@@ -30,6 +32,7 @@ public interface StatefulAchievable extends Achievable {
         try {
             if (state == null) {
                 Achievables.getInstance().getAchievableManager().initializePlayerState(player, this);
+                state = Achievables.getInstance().getAchievableManager().getPlayerState(player, this);
             }
 
         } catch (ExecutionException e) {
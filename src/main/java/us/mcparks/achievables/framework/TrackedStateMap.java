@@ -0,0 +1,17 @@
+package us.mcparks.achievables.framework;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A state map that remembers which keys were changed since it was created.
+ */
+public interface TrackedStateMap extends Map<String, Object> {
+
+    // Keys whose value was changed, including lists and maps changed in place
+    Set<String> getModifiedKeys();
+
+    default boolean isModified() {
+        return !getModifiedKeys().isEmpty();
+    }
+}
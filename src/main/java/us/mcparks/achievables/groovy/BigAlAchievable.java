@@ -1,24 +1,39 @@
 package us.mcparks.achievables.groovy;
 
-import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
 import groovy.lang.Closure;
 import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import org.codehaus.groovy.runtime.typehandling.DefaultTypeTransformation;
 import us.mcparks.achievables.Achievables;
 import us.mcparks.achievables.events.Event;
 import us.mcparks.achievables.events.PlayerEvent;
 import us.mcparks.achievables.framework.AbstractStatefulAchievable;
 import us.mcparks.achievables.framework.AchievablePlayer;
 import us.mcparks.achievables.framework.BackfillableAchievable;
+import us.mcparks.achievables.framework.MergePolicy;
+import us.mcparks.achievables.framework.MergeableSharedState;
+import us.mcparks.achievables.framework.StateDelta;
+import us.mcparks.achievables.framework.StateRecord;
+import us.mcparks.achievables.metrics.AchievableMetrics;
 import us.mcparks.achievables.triggers.AchievableTrigger;
 import us.mcparks.achievables.triggers.EventAchievableTrigger;
+import us.mcparks.achievables.triggers.EventPredicate;
+import us.mcparks.achievables.triggers.TriggerKey;
+import us.mcparks.achievables.triggers.TriggerTypeIndex;
 import us.mcparks.achievables.utils.AchievableGsonManager;
 
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 
@@ -26,8 +41,8 @@ import java.util.logging.Level;
 public class BigAlAchievable extends AbstractStatefulAchievable implements BackfillableAchievable {
     List<Closure<Boolean>> satisfiedScripts;
     List<Closure<Boolean>> disqualifiedScripts;
-    Multimap<AchievableTrigger.Type, Closure> eventHandlers;
-    Multimap<AchievableTrigger.Type, Closure> staticEventHandlers;
+    TriggerTypeIndex<EventClosureScript> eventHandlers;
+    TriggerTypeIndex<EventClosureScript> staticEventHandlers;
 
     @Setter static Supplier<Object> backfillDataSupplier = null;
 
@@ -37,153 +52,321 @@ public class BigAlAchievable extends AbstractStatefulAchievable implements Backf
     @EqualsAndHashCode.Include
     UUID uuid;
 
+    private final transient ReentrantLock sharedStateLock = new ReentrantLock();
+
+    // when this achievable's latest scripts went over the execution budget, oldest first; only as many as quarantine takes
+    private final transient Deque<Long> budgetOverruns = new ArrayDeque<>();
+    private final transient Consumer<ExecutionBudget> overrun = this::overBudget;
+    private final transient AtomicBoolean quarantined = new AtomicBoolean();
+
+    // the player handlers matching the last trigger, as processPlayer is called with the same trigger for every player
+    private transient volatile MatchingHandlers lastMatching;
+
+    // what each activator and deactivator reads, for those it's known for, and their last results
+    private final transient Map<Closure<?>, StateReads> scriptReads;
+    private final transient VerdictCache verdicts;
+
+    // how concurrent writes to each shared key are combined, for the keys that have a policy, and their live values
+    private final Map<String, MergePolicy> sharedMergePolicies;
+    private transient volatile MergeableSharedState mergeableShared;
+
     public BigAlAchievable(UUID uuid, Map<String, Object> initialState, Map<String, Object> initialStaticState, List<Closure<Boolean>> isSatisfiedScripts, List<Closure<Boolean>> isDisqualifiedScripts, Closure backfillScript, EventClosureScript... eventScripts) {
+        this(uuid, initialState, initialStaticState, isSatisfiedScripts, isDisqualifiedScripts, Collections.emptyMap(), Collections.emptyMap(), backfillScript, eventScripts);
+    }
+
+    public BigAlAchievable(UUID uuid, Map<String, Object> initialState, Map<String, Object> initialStaticState, List<Closure<Boolean>> isSatisfiedScripts, List<Closure<Boolean>> isDisqualifiedScripts, Map<Closure<?>, StateReads> scriptReads, Map<String, MergePolicy> sharedMergePolicies, Closure backfillScript, EventClosureScript... eventScripts) {
         super(AchievableGsonManager.getGson().toJson(initialState), AchievableGsonManager.getGson().toJson(initialStaticState));
         this.satisfiedScripts = isSatisfiedScripts;
         this.disqualifiedScripts = isDisqualifiedScripts;
         this.uuid = uuid;
-        this.eventHandlers = HashMultimap.create();
-        this.staticEventHandlers = HashMultimap.create();
+        this.scriptReads = new IdentityHashMap<>(scriptReads);
+        List<Closure<Boolean>> verdictScripts = new ArrayList<>(satisfiedScripts);
+        if (disqualifiedScripts != null) {
+            verdictScripts.addAll(disqualifiedScripts);
+        }
+        StateReads[] reads = new StateReads[verdictScripts.size()];
+        for (int index = 0; index < reads.length; index++) {
+            reads[index] = this.scriptReads.get(verdictScripts.get(index));
+        }
+        this.verdicts = new VerdictCache(reads);
+        for (String key : sharedMergePolicies.keySet()) {
+            if (initialStaticState == null || !initialStaticState.containsKey(key)) {
+                throw new IllegalArgumentException("Shared key " + key + " has a merge policy but isn't part of the shared state");
+            }
+        }
+        this.sharedMergePolicies = ImmutableMap.copyOf(sharedMergePolicies);
+        Multimap<AchievableTrigger.Type, EventClosureScript> eventHandlers = ArrayListMultimap.create();
+        Multimap<AchievableTrigger.Type, EventClosureScript> staticEventHandlers = ArrayListMultimap.create();
         for (EventClosureScript handler : eventScripts) {
+            for (String property : handler.where.getValues().keySet()) {
+                if (!EventPredicate.hasProperty(handler.eventClass, property)) {
+                    throw new IllegalArgumentException("where: of a " + handler.eventClass.getSimpleName() + " handler asks for " + property + ", which it doesn't have");
+                }
+            }
             if (handler.isStatic) {
                 System.out.println("We have a static event handler for " + handler.eventClass.getCanonicalName());
-                this.staticEventHandlers.put(new AchievableTrigger.Type(handler.eventClass.getCanonicalName()), handler.closure);
+                staticEventHandlers.put(AchievableTrigger.Type.of(handler.eventClass), handler);
             } else {
-                this.eventHandlers.put(new AchievableTrigger.Type(handler.eventClass.getCanonicalName()), handler.closure);
+                eventHandlers.put(AchievableTrigger.Type.of(handler.eventClass), handler);
             }
         }
+        this.eventHandlers = new TriggerTypeIndex<>(eventHandlers);
+        this.staticEventHandlers = new TriggerTypeIndex<>(staticEventHandlers);
         this.backfillScript = backfillScript;
+        checkCompiledLayouts(eventScripts);
+    }
+
+    // Statically compiled scripts address state by slot, so they have to agree with the schemas on where each key lives
+    private void checkCompiledLayouts(EventClosureScript... eventScripts) {
+        List<Closure> scripts = new ArrayList<>(satisfiedScripts);
+        if (disqualifiedScripts != null) {
+            scripts.addAll(disqualifiedScripts);
+        }
+        for (EventClosureScript handler : eventScripts) {
+            scripts.add(handler.closure);
+        }
+        for (Closure script : scripts) {
+            if (script instanceof StaticallyCompiledClosure) {
+                StaticallyCompiledClosure compiled = (StaticallyCompiledClosure) script;
+                if (!compiled.getStateLayout().equals(getPlayerStateSchema().getLayout())
+                        || !compiled.getSharedLayout().equals(getStaticStateSchema().getLayout())) {
+                    throw new IllegalStateException("Statically compiled script " + compiled.getMethodName() + " was compiled against state ["
+                            + compiled.getStateLayout() + "] and shared state [" + compiled.getSharedLayout() + "], but the achievable's are ["
+                            + getPlayerStateSchema().getLayout() + "] and [" + getStaticStateSchema().getLayout() + "]");
+                }
+            }
+        }
     }
 
     @Override
     public Collection<AchievableTrigger.Type> getTriggers() {
         Set<AchievableTrigger.Type> triggers = new HashSet<>();
-        triggers.addAll(staticEventHandlers.keySet());
-        triggers.addAll(eventHandlers.keySet());
+        triggers.addAll(staticEventHandlers.getDeclaredTypes());
+        triggers.addAll(eventHandlers.getDeclaredTypes());
         return triggers;
     }
 
+    // Keyed by a property that every handler declared for the type has a where: for, if there is one
     @Override
-    public boolean isSatisfied(AchievablePlayer player) {
-        ScriptThisObject obj = new ScriptThisObject(player, this::getInitialPlayerState, this::getInitialStaticState, getPlayerState(player), getStaticState(), null);
-
-        for (Closure<Boolean> script : satisfiedScripts) {
-            if (!script.rehydrate(null, obj, obj).call()) {
-                return false;
+    public TriggerKey getTriggerKey(AchievableTrigger.Type type) {
+        List<EventClosureScript> handlers = new ArrayList<>(eventHandlers.asMultimap().get(type));
+        handlers.addAll(staticEventHandlers.asMultimap().get(type));
+        if (handlers.isEmpty()) {
+            return null;
+        }
+        for (String property : handlers.get(0).where.getValues().keySet()) {
+            ImmutableSet.Builder<Object> values = ImmutableSet.builder();
+            boolean everyHandler = true;
+            for (EventClosureScript handler : handlers) {
+                Object value = handler.where.getValues().get(property);
+                if (value == null) {
+                    everyHandler = false;
+                    break;
+                }
+                values.add(value);
+            }
+            if (everyHandler) {
+                return new TriggerKey(property, values.build());
             }
         }
-        return true;
+        return null;
+    }
+
+    @Override
+    public boolean isSatisfied(AchievablePlayer player) {
+        if (quarantined.get()) return false;
+
+        return evaluate(player, satisfiedScripts, 0, false);
     }
 
     public boolean isDisqualified(AchievablePlayer player) {
+        if (quarantined.get()) return false;
         if (disqualifiedScripts == null || disqualifiedScripts.isEmpty()) return false;
 
-        ScriptThisObject obj = new ScriptThisObject(player, this::getInitialPlayerState, this::getInitialStaticState, getPlayerState(player), getStaticState(), null);
+        return evaluate(player, disqualifiedScripts, satisfiedScripts.size(), true);
+    }
 
-        for (Closure<Boolean> script : disqualifiedScripts) {
-            if (script.rehydrate(null, obj, obj).call()) {
-                return true;
+    /*
+     * Whether all the activators hold (or, for the deactivators, any of them), going through them in order and stopping
+     * at the first that decides it. A closure only runs if the VerdictCache has no result for it that's still valid, so
+     * when nothing it reads has been written, this doesn't run any script at all.
+     */
+    private boolean evaluate(AchievablePlayer player, List<Closure<Boolean>> scripts, int firstIndex, boolean any) {
+        Map<String, Object> state = getPlayerState(player);
+        Map<String, Object> shared = getStaticState();
+        MergeableSharedState mergeable = mergeableShared();
+        ScriptThisObject obj = null;
+        VerdictCache.Read[] read = null;
+        boolean result = !any;
+        for (int i = 0; i < scripts.size(); i++) {
+            Boolean value = verdicts.get(player, firstIndex + i, state, shared, mergeable);
+            if (value == null) {
+                if (obj == null) {
+                    read = verdicts.read(firstIndex, scripts.size(), state, shared, mergeable);
+                    obj = scriptThis(player, state, shared, null);
+                }
+                value = DefaultTypeTransformation.castToBoolean(run(scripts.get(i), obj));
+                verdicts.put(player, firstIndex + i, read[i], value);
+            }
+            if (value == any) {
+                result = any;
+                break;
             }
         }
-        return false;
+        // only evaluations that actually ran a script are reported
+        if (obj != null || scripts.isEmpty()) {
+            if (any) {
+                Achievables.getInstance().getMetrics().deactivatorsEvaluated(this, result);
+            } else {
+                Achievables.getInstance().getMetrics().activatorsEvaluated(this, result);
+            }
+        }
+        return result;
     }
 
     @Override
-    public void process(AchievableTrigger trigger) {
-        // First, check if this achievable is listening to the event statically
-        if (staticEventHandlers.containsKey(trigger.getType())) {
-            try {
-                staticEventHandlers.get(trigger.getType()).forEach(
-                        script -> {
-                            ScriptThisObject obj = new ScriptThisObject(null, this::getInitialPlayerState, this::getInitialStaticState, null, getStaticState(), ((EventAchievableTrigger) trigger).getEvent());
-                            script.rehydrate(null, obj, obj).call();
-                            try {
-                                Achievables.getInstance().getAchievableManager().setStaticState(this, obj.shared);
-                            } catch (ExecutionException e) {
-                                e.printStackTrace();
-                            }
-                        });
-            } catch (Exception e) {
-                Achievables.getInstance().getLogger().log(Level.SEVERE, "Error processing static event handler for " + trigger + " in achievable " + getUUID().toString(), e);
+    public boolean processShared(AchievableTrigger trigger) {
+        if (quarantined.get() || !staticEventHandlers.matches(trigger.getType())) {
+            return false;
+        }
+        List<EventClosureScript> handlers = matching(staticEventHandlers, trigger);
+        Dispatch dispatch = new Dispatch();
+        try {
+            for (EventClosureScript handler : handlers) {
+                withSharedStateLock(() -> {
+                    ScriptThisObject obj = scriptThis(null, null, getStaticState(), ((EventAchievableTrigger) trigger).getEvent());
+                    runHandler(handler.closure, obj, trigger);
+                    dispatch.dirtySharedKeys.addAll(obj.shared.getModifiedKeys());
+                    try {
+                        writeShared(obj);
+                    } catch (ExecutionException e) {
+                        e.printStackTrace();
+                    }
+                });
             }
+        } catch (Exception e) {
+            Achievables.getInstance().getLogger().log(Level.SEVERE, "Error processing static event handler for " + trigger + " in achievable " + getUUID().toString(), e);
         }
+        // a change to static state can affect every player's activators and deactivators
+        return !dispatch.dirtySharedKeys.isEmpty();
+    }
 
-        // Then, use the default process method to handle it for each player if it also appears in the non-static event handlers
-        if (eventHandlers.containsKey(trigger.getType())) {
-            super.process(trigger);
-        }
+    @Override
+    public boolean handlesPlayers(AchievableTrigger trigger) {
+        return !quarantined.get() && eventHandlers.matches(trigger.getType()) && !matchingPlayerHandlers(trigger).isEmpty();
+    }
 
+    @Override
+    public boolean processPlayer(AchievablePlayer player, AchievableTrigger trigger) {
+        Dispatch dispatch = new Dispatch();
+        processPlayer(player, trigger, dispatch);
+        return !dispatch.dirtySharedKeys.isEmpty();
+    }
 
-        // Now that we've processed the event for all players, see if that had an effect on players' completion
-        // (the reason why we do this again is that static state may have been updated by the individual event responders)
-        for (AchievablePlayer player : getApplicablePlayers()) {
-            try {
-                if (!Achievables.getInstance().getAchievableManager().isCompleted(this, player)) {
-                    if (isDisqualified(player)) {
-                        try {
-                            Achievables.getInstance().getAchievableManager().setPlayerState(player, this, getInitialPlayerState());
-                        } catch (ExecutionException e) {
-                            e.printStackTrace();
-                            Achievables.getInstance().getLogger().warning("Failed to reset player state for achievable");
-                        }
-                    }
+    @Override
+    public void reevaluatePlayer(AchievablePlayer player) {
+        try {
+            if (!quarantined.get() && !Achievables.getInstance().getAchievableManager().isCompleted(this, player)) {
+                reevaluate(player);
+            }
+        } catch (Exception ex) {
+            Achievables.getInstance().getLogger().log(Level.SEVERE, "Error reevaluating player " + player + " in achievable " + getUUID().toString(), ex);
+        }
+    }
 
-                    if (isSatisfied(player)) {
-                        Achievables.getInstance().getAchievableManager().completeAchievable(this, player);
-                    }
+    private void processPlayer(AchievablePlayer player, AchievableTrigger trigger, Dispatch dispatch) {
+        try {
+            if (!Achievables.getInstance().getAchievableManager().isCompleted(this, player)) {
+                // only a change to this player's state can change their activators and deactivators
+                if (runEventHandlers(player, trigger, true, dispatch)) {
+                    reevaluate(player);
                 }
-            } catch (Exception ex) {
-                Achievables.getInstance().getLogger().log(Level.SEVERE, "Error processing trigger " + trigger + " for player " + player + "in achievable " + getUUID().toString(), ex);
+            } else {
+                // even if it's satisfied, we still need to process the trigger just in case there is static state -- we dont need to save the player state though!
+                runEventHandlers(player, trigger, false, dispatch);
             }
+        } catch (Exception ex) {
+            Achievables.getInstance().getLogger().log(Level.SEVERE, "Error processing trigger " + trigger + " for player " + player + "in achievable " + getUUID().toString(), ex);
+        }
+    }
 
+    // Resets the player if they've been disqualified, then completes the achievable for them if they've satisfied it
+    private void reevaluate(AchievablePlayer player) throws ExecutionException {
+        if (disqualifiedScripts != null && !disqualifiedScripts.isEmpty() && evaluate(player, disqualifiedScripts, satisfiedScripts.size(), true)) {
+            StateRecord initialState = getPlayerStateSchema().newRecord();
+            try {
+                Achievables.getInstance().getAchievableManager().setPlayerState(player, this, initialState);
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+                Achievables.getInstance().getLogger().warning("Failed to reset player state for achievable");
+            }
         }
 
+        if (evaluate(player, satisfiedScripts, 0, false)) {
+            Achievables.getInstance().getAchievableManager().completeAchievable(this, player);
+            Achievables.getInstance().getMetrics().achievableCompleted(this, player);
+        }
     }
 
     @Override
     public void process(AchievablePlayer player, AchievableTrigger trigger, boolean savePlayerState) {
-        if (trigger instanceof EventAchievableTrigger) {
-            if (((EventAchievableTrigger) trigger).getEvent() instanceof PlayerEvent &&
-                    !((PlayerEvent) ((EventAchievableTrigger) trigger).getEvent()).getApplicablePlayer().equals(player)) {
-                return;
+        if (runEventHandlers(player, trigger, savePlayerState, new Dispatch()) && isDisqualified(player)) {
+            try {
+                Achievables.getInstance().getAchievableManager().setPlayerState(player, this, getInitialPlayerState());
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+                Achievables.getInstance().getLogger().warning("Failed to reset player state for achievable");
             }
+        }
+    }
 
-            if (eventHandlers.containsKey(trigger.getType())) {
-                eventHandlers.get(trigger.getType()).forEach(
-                        script -> {
-                            ScriptThisObject obj = new ScriptThisObject(player, this::getInitialPlayerState, this::getInitialStaticState, getPlayerState(player), getStaticState(), ((EventAchievableTrigger) trigger).getEvent());
-                            script.rehydrate(null, obj, obj).call();
-                            try {
-                                Achievables.getInstance().getAchievableManager().setPlayerState(player, this, obj.state, savePlayerState);
-                                Achievables.getInstance().getAchievableManager().setStaticState(this, obj.shared);
-                            } catch (ExecutionException e) {
-                                e.printStackTrace();
-                            }
-                        });
-
-
-                if (isDisqualified(player)) {
-                    try {
-                        Achievables.getInstance().getAchievableManager().setPlayerState(player, this, getInitialPlayerState());
-                    } catch (ExecutionException e) {
-                        e.printStackTrace();
-                        Achievables.getInstance().getLogger().warning("Failed to reset player state for achievable");
-                    }
+    // Runs the player's event handlers for this trigger, returning whether any of them changed the player's state
+    private boolean runEventHandlers(AchievablePlayer player, AchievableTrigger trigger, boolean savePlayerState, Dispatch dispatch) {
+        if (quarantined.get() || !(trigger instanceof EventAchievableTrigger) || !eventHandlers.matches(trigger.getType())) {
+            return false;
+        }
+        AchievablePlayer target = trigger.getTargetPlayer();
+        if (target != null && !target.equals(player)) {
+            return false;
+        }
+
+        boolean playerStateChanged = false;
+        for (EventClosureScript handler : matchingPlayerHandlers(trigger)) {
+            Map<String, Object> before = getPlayerState(player);
+            ScriptThisObject obj = withSharedStateLock(() -> {
+                ScriptThisObject scriptThis = scriptThis(player, before, getStaticState(), ((EventAchievableTrigger) trigger).getEvent());
+                runHandler(handler.closure, scriptThis, trigger);
+                try {
+                    writeShared(scriptThis);
+                } catch (ExecutionException e) {
+                    e.printStackTrace();
                 }
+                return scriptThis;
+            });
+            playerStateChanged |= obj.state.isModified();
+            dispatch.dirtySharedKeys.addAll(obj.shared.getModifiedKeys());
+            try {
+                // an unchanged state isn't written at all
+                Achievables.getInstance().getAchievableManager().applyPlayerStateDelta(player, this, StateDelta.of(obj.state), savePlayerState);
+            } catch (ExecutionException e) {
+                e.printStackTrace();
             }
         }
+        return playerStateChanged;
     }
 
     @Override
     public void processBackfill(AchievablePlayer player) {
-        if (backfillScript != null) {
-            BackfillScriptThisObject obj = BackfillScriptThisObject.of(player, getPlayerState(player), uuid, backfillDataSupplier.get());
-            backfillScript.rehydrate(null, obj, obj).call();
+        if (backfillScript != null && !quarantined.get()) {
+            // a copy, so the script never changes the manager's stored map
+            BackfillScriptThisObject obj = BackfillScriptThisObject.of(player, getPlayerStateSchema().newRecord(getPlayerState(player)), uuid, backfillDataSupplier.get());
+            withinBudget(() -> backfillScript.rehydrate(null, obj, obj).call());
             try {
                 Achievables.getInstance().getAchievableManager().setPlayerState(player, this, obj.state);
 
                 if (isSatisfied(player)) {
                     Achievables.getInstance().getAchievableManager().completeAchievable(this, player);
+                    Achievables.getInstance().getMetrics().achievableCompleted(this, player);
                 }
             } catch (ExecutionException e) {
                 e.printStackTrace();
@@ -208,23 +391,11 @@ public class BigAlAchievable extends AbstractStatefulAchievable implements Backf
                 .withInitialStaticState(getInitialStaticState())
                 .addSatisfiedScripts(satisfiedScripts)
                 .addDisqualifiedScripts(disqualifiedScripts)
+                .addScriptReads(scriptReads)
+                .withSharedMergePolicies(sharedMergePolicies)
                 .setBackfillScript(backfillScript)
-                .addEventHandlers(eventHandlers.entries().stream().map(entry -> {
-                    try {
-                        return EventClosureScript.of((Class<? extends Event>) Class.forName(entry.getKey().toString()), entry.getValue(), false);
-                    } catch (ClassNotFoundException e) {
-                        e.printStackTrace();
-                        return null;
-                    }
-                }).toArray(EventClosureScript[]::new))
-                .addEventHandlers(staticEventHandlers.entries().stream().map(entry -> {
-                    try {
-                        return EventClosureScript.of((Class<? extends Event>) Class.forName(entry.getKey().toString()), entry.getValue(), true);
-                    } catch (ClassNotFoundException e) {
-                        e.printStackTrace();
-                        return null;
-                    }
-                }).toArray(EventClosureScript[]::new));
+                .addEventHandlers(eventHandlers.asMultimap().values().toArray(new EventClosureScript[0]))
+                .addEventHandlers(staticEventHandlers.asMultimap().values().toArray(new EventClosureScript[0]));
     }
 
     public static BigAlAchievable.Builder builder() {
@@ -232,54 +403,288 @@ public class BigAlAchievable extends AbstractStatefulAchievable implements Backf
     }
 
 
-    static class ScriptThisObject {
-        final AchievablePlayer player;
-        final InitialStateBackedMap state;
-        final InitialStateBackedMap shared;
-        final Event event;
+    /*
+     * Players can be processed on several threads at once (see PlayerStripedTriggerExecutor), and any handler can change
+     * static state. Handlers of achievables that have static state therefore read, run and write it back while holding
+     * this lock, so concurrent handlers can't lose each other's changes. Achievables whose shared keys all have a merge
+     * policy don't need it, as their handlers' writes are merged key by key instead (see MergeableSharedState).
+     */
+    private <T> T withSharedStateLock(Supplier<T> action) {
+        if (!hasSharedState() || isSharedStateMergeable()) {
+            return action.get();
+        }
+        sharedStateLock.lock();
+        try {
+            return action.get();
+        } finally {
+            sharedStateLock.unlock();
+        }
+    }
+
+    private void withSharedStateLock(Runnable action) {
+        withSharedStateLock(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private boolean hasSharedState() {
+        return getStaticStateSchema().size() > 0 || !staticEventHandlers.getDeclaredTypes().isEmpty();
+    }
+
+    private boolean isSharedStateMergeable() {
+        MergeableSharedState mergeable = mergeableShared();
+        return mergeable != null && mergeable.coversAll();
+    }
 
-        ScriptThisObject(AchievablePlayer player, Supplier<Map<String, Object>> initialPlayerStateSupplier, Supplier<Map<String, Object>> initialStaticStateSupplier, Map<String,Object> state, Map<String,Object> shared, Event event) {
-            this(player, new InitialStateBackedMap(state, initialPlayerStateSupplier), new InitialStateBackedMap(shared, initialStaticStateSupplier), event);
+    // The live values of the shared keys with a merge policy, or null if none has one
+    private MergeableSharedState mergeableShared() {
+        if (sharedMergePolicies.isEmpty()) {
+            return null;
+        }
+        MergeableSharedState mergeable = mergeableShared;
+        if (mergeable == null) {
+            synchronized (this) {
+                mergeable = mergeableShared;
+                if (mergeable == null) {
+                    mergeable = mergeableShared = new MergeableSharedState(getStaticStateSchema(), sharedMergePolicies);
+                }
+            }
         }
+        return mergeable;
+    }
 
-        ScriptThisObject(AchievablePlayer player, InitialStateBackedMap state, InitialStateBackedMap shared, Event event) {
-            this.player = player;
-            this.state = state;
-            this.shared = shared;
-            this.event = event;
+    /*
+     * Stores what a handler changed in the shared state. Keys with a merge policy are merged into their live values, which
+     * are stored by the next flush; the rest are written through the manager. Writing back unchanged static state could
+     * undo a change another thread made in the meantime, so only changed keys are written.
+     */
+    private void writeShared(ScriptThisObject obj) throws ExecutionException {
+        if (!obj.shared.isModified()) {
+            return;
+        }
+        Set<String> keys = obj.shared.getModifiedKeys();
+        MergeableSharedState mergeable = mergeableShared();
+        Set<String> merged = mergeable == null ? Collections.emptySet() : mergeable.merge(obj.sharedSnapshot);
+        if (merged.size() < keys.size()) {
+            Set<String> rest = new HashSet<>(keys);
+            rest.removeAll(merged);
+            if (isSharedStateMergeable()) {
+                // the handler ran without the lock, so its changes go over the state as it's stored now
+                sharedStateLock.lock();
+                try {
+                    StateRecord stored = getStaticStateSchema().newRecord(getStaticState());
+                    for (String key : rest) {
+                        if (obj.shared.containsKey(key)) {
+                            stored.put(key, obj.shared.get(key));
+                        } else {
+                            stored.remove(key);
+                        }
+                    }
+                    Achievables.getInstance().getAchievableManager().applyStaticStateDelta(this, StateDelta.of(stored, rest));
+                } finally {
+                    sharedStateLock.unlock();
+                }
+            } else {
+                Achievables.getInstance().getAchievableManager().applyStaticStateDelta(this, StateDelta.of(obj.shared, rest));
+            }
+        }
+        if (!merged.isEmpty()) {
+            mergeable.scheduleFlush(this::flushSharedState, Achievables.getInstance().getSharedStateFlushMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Takes over the live merged shared values of the achievable this one replaces (with the same UUID), before this one
+     * handles any triggers, so merges made while both are handling triggers all end up in one place. If this one
+     * declares its shared state differently, the other one's values are stored instead, for this one to read.
+     */
+    public void takeOverSharedState(BigAlAchievable previous) {
+        MergeableSharedState live = previous.mergeableShared();
+        if (live == null) {
+            return;
+        }
+        synchronized (this) {
+            if (mergeableShared == null && live.fits(getStaticStateSchema(), sharedMergePolicies)) {
+                mergeableShared = live;
+                return;
+            }
         }
+        previous.flushSharedState();
+    }
 
+    /**
+     * Stores the merged values of the shared keys that have a merge policy through the manager. This happens by itself a
+     * while after they change (see {@link Achievables#setSharedStateFlushMillis}), but call it before shutting down.
+     */
+    public void flushSharedState() {
+        MergeableSharedState mergeable = mergeableShared();
+        if (mergeable == null) {
+            return;
+        }
+        StateDelta delta = null;
+        sharedStateLock.lock();
+        try {
+            // a replacement shares the live values (see takeOverSharedState), and its flushes mustn't overtake this one's
+            synchronized (mergeable) {
+                delta = mergeable.drain(getStaticState());
+                if (delta != null) {
+                    Achievables.getInstance().getAchievableManager().applyStaticStateDelta(this, delta);
+                }
+            }
+        } catch (Exception e) {
+            if (delta != null) {
+                mergeable.markDirty(delta.getChangedKeys());
+                mergeable.scheduleFlush(this::flushSharedState, Achievables.getInstance().getSharedStateFlushMillis(), TimeUnit.MILLISECONDS);
+            }
+            Achievables.getInstance().getLogger().log(Level.SEVERE, "Error storing the shared state of achievable " + uuid + ", will retry", e);
+        } finally {
+            sharedStateLock.unlock();
+        }
     }
 
-    static class InitialStateBackedMap extends HashMap<String, Object> {
-        Supplier<Map<String,Object>> getInitialState;
+    // Runs a script against the given state; statically compiled ones are called directly instead of being rehydrated
+    private Object run(Closure<?> script, ScriptThisObject obj) {
+        if (script instanceof StaticallyCompiledClosure) {
+            return withinBudget(() -> ((StaticallyCompiledClosure) script).invoke(obj.state, obj.shared, obj.event, obj.player));
+        }
+        return withinBudget(() -> script.rehydrate(null, obj, obj).call());
+    }
 
-        public InitialStateBackedMap(Map<String, Object> currentState, Supplier<Map<String, Object>> initialState) {
-            if (currentState != null) {
-                putAll(currentState);
+    // Runs a script within the execution budget, quarantining this achievable if its scripts keep going over it
+    private <T> T withinBudget(Supplier<T> script) {
+        ExecutionBudget budget = Achievables.getInstance().getExecutionBudget();
+        // an overrun is counted by the budget as it happens, so a script that catches the exception is counted too
+        boolean metered = budget.begin(overrun);
+        try {
+            return script.get();
+        } catch (StackOverflowError e) {
+            if (!metered) {
+                throw e;
             }
-            if (initialState != null) {
-                getInitialState = initialState;
+            // unbounded recursion usually runs out of stack before it runs out of steps
+            overBudget(budget);
+            throw new ExecutionBudgetExceededException("Script recursed too deeply");
+        } finally {
+            if (metered) {
+                ExecutionBudget.end();
             }
         }
+    }
 
-        @Override
-        public Object get(Object key) {
-            if (!containsKey(key)) {
-                if (getInitialState == null) {
-                    return null;
-                }
-                Object defaultValue = getInitialState.get().get(key);
-                if (defaultValue != null) {
-                    put((String)key, defaultValue);
-                    return defaultValue;
-                } else {
-                    return null;
+    private void overBudget(ExecutionBudget budget) {
+        Achievables.getInstance().getMetrics().budgetExceeded(this);
+        int overruns;
+        synchronized (budgetOverruns) {
+            long now = System.nanoTime();
+            budgetOverruns.addLast(now);
+            while (budgetOverruns.size() > Math.max(budget.getQuarantineAfter(), 1)
+                    || (budget.getQuarantineWindowNanos() > 0 && now - budgetOverruns.getFirst() > budget.getQuarantineWindowNanos())) {
+                budgetOverruns.removeFirst();
+            }
+            overruns = budgetOverruns.size();
+        }
+        if (budget.getQuarantineAfter() > 0 && overruns >= budget.getQuarantineAfter() && quarantined.compareAndSet(false, true)) {
+            Achievables.getInstance().getLogger().severe("Quarantined achievable " + uuid + ": its scripts went over the execution budget " + overruns + " times, so its handlers won't run until it's released");
+            Achievables.getInstance().getMetrics().achievableQuarantined(this);
+        }
+    }
+
+    // Whether this achievable's handlers were disabled for going over the execution budget too often
+    public boolean isQuarantined() {
+        return quarantined.get();
+    }
+
+    public void releaseFromQuarantine() {
+        synchronized (budgetOverruns) {
+            budgetOverruns.clear();
+        }
+        quarantined.set(false);
+    }
+
+    private List<EventClosureScript> matchingPlayerHandlers(AchievableTrigger trigger) {
+        MatchingHandlers last = lastMatching;
+        if (last != null && last.trigger == trigger) {
+            return last.handlers;
+        }
+        List<EventClosureScript> handlers = matching(eventHandlers, trigger);
+        lastMatching = new MatchingHandlers(trigger, handlers);
+        return handlers;
+    }
+
+    // The handlers for the trigger's type whose where: its event satisfies
+    private static List<EventClosureScript> matching(TriggerTypeIndex<EventClosureScript> index, AchievableTrigger trigger) {
+        if (!(trigger instanceof EventAchievableTrigger)) {
+            return Collections.emptyList();
+        }
+        Event event = ((EventAchievableTrigger) trigger).getEvent();
+        List<EventClosureScript> handlers = index.get(trigger.getType());
+        List<EventClosureScript> matching = null;
+        for (int i = 0; i < handlers.size(); i++) {
+            EventClosureScript handler = handlers.get(i);
+            if (!handler.where.isAny() && !handler.where.test(event)) {
+                if (matching == null) {
+                    matching = new ArrayList<>(handlers.subList(0, i));
                 }
-            } else {
-                return super.get(key);
+            } else if (matching != null) {
+                matching.add(handler);
             }
         }
+        return matching != null ? matching : handlers;
+    }
+
+    // Runs an event handler, timing it if there are metrics to record it to
+    private Object runHandler(Closure<?> script, ScriptThisObject obj, AchievableTrigger trigger) {
+        AchievableMetrics metrics = Achievables.getInstance().getMetrics();
+        if (!metrics.isEnabled()) {
+            return run(script, obj);
+        }
+        long start = System.nanoTime();
+        try {
+            return run(script, obj);
+        } finally {
+            metrics.handlerTimed(this, trigger, obj.player, System.nanoTime() - start);
+        }
+    }
+
+    // Builds what a script sees, laying the given state (or the defaults, where it's missing) out as records
+    private ScriptThisObject scriptThis(AchievablePlayer player, Map<String, Object> state, Map<String, Object> shared, Event event) {
+        MergeableSharedState mergeable = mergeableShared();
+        if (mergeable != null) {
+            // with the live values of the keys that have a merge policy
+            MergeableSharedState.Snapshot snapshot = mergeable.read(shared);
+            return new ScriptThisObject(player, getPlayerStateSchema().newRecord(state), snapshot.getRecord(), snapshot, event);
+        }
+        return new ScriptThisObject(player, getPlayerStateSchema().newRecord(state), getStaticStateSchema().newRecord(shared), null, event);
+    }
+
+    static class ScriptThisObject {
+        final AchievablePlayer player;
+        final StateRecord state;
+        final StateRecord shared;
+        // what the keys with a merge policy were read as, if any have one
+        final MergeableSharedState.Snapshot sharedSnapshot;
+        final Event event;
+
+        ScriptThisObject(AchievablePlayer player, StateRecord state, StateRecord shared, MergeableSharedState.Snapshot sharedSnapshot, Event event) {
+            this.player = player;
+            this.state = state;
+            this.shared = shared;
+            this.sharedSnapshot = sharedSnapshot;
+            this.event = event;
+        }
+
+    }
+
+    // Bookkeeping for a single processShared or processPlayer call: which static state keys actually changed
+    static class Dispatch {
+        final Set<String> dirtySharedKeys = new HashSet<>();
+    }
+
+    @AllArgsConstructor
+    static class MatchingHandlers {
+        final AchievableTrigger trigger;
+        final List<EventClosureScript> handlers;
     }
 
     @RequiredArgsConstructor(staticName = "of")
@@ -296,6 +701,8 @@ public class BigAlAchievable extends AbstractStatefulAchievable implements Backf
         List<Closure<Boolean>> isSatisfied = new ArrayList<>();
         List<Closure<Boolean>> isDisqualified = new ArrayList<>();
         List<EventClosureScript> eventScripts = new ArrayList<>();
+        Map<Closure<?>, StateReads> scriptReads = new IdentityHashMap<>();
+        Map<String, MergePolicy> sharedMergePolicies = new LinkedHashMap<>();
         UUID uuid;
 
         Closure backfillScript = null;
@@ -330,6 +737,14 @@ public class BigAlAchievable extends AbstractStatefulAchievable implements Backf
             return this;
         }
 
+        // An activator whose result only depends on the given state and shared keys, so it's only run again once they change
+        public Builder addSatisfiedScript(Closure<Boolean> script, StateReads reads) {
+            if (script != null && reads != null) {
+                scriptReads.put(script, reads);
+            }
+            return addSatisfiedScript(script);
+        }
+
         public Builder addSatisfiedScripts(List<Closure<Boolean>> scripts) {
             if (scripts == null) return this;
 
@@ -344,6 +759,13 @@ public class BigAlAchievable extends AbstractStatefulAchievable implements Backf
             return this;
         }
 
+        public Builder addDisqualifiedScript(Closure<Boolean> script, StateReads reads) {
+            if (script != null && reads != null) {
+                scriptReads.put(script, reads);
+            }
+            return addDisqualifiedScript(script);
+        }
+
         public Builder addDisqualifiedScripts(List<Closure<Boolean>> scripts) {
             if (scripts == null) return this;
 
@@ -351,6 +773,22 @@ public class BigAlAchievable extends AbstractStatefulAchievable implements Backf
             return this;
         }
 
+        public Builder addScriptReads(Map<Closure<?>, StateReads> scriptReads) {
+            this.scriptReads.putAll(scriptReads);
+            return this;
+        }
+
+        // Concurrent writes to the shared key are combined by the policy instead of the last one winning
+        public Builder withSharedMergePolicy(String key, MergePolicy policy) {
+            this.sharedMergePolicies.put(key, policy);
+            return this;
+        }
+
+        public Builder withSharedMergePolicies(Map<String, MergePolicy> policies) {
+            this.sharedMergePolicies.putAll(policies);
+            return this;
+        }
+
         public Builder addEventHandler(EventClosureScript script) {
             this.eventScripts.add(script);
             return this;
@@ -375,6 +813,8 @@ public class BigAlAchievable extends AbstractStatefulAchievable implements Backf
             return new BigAlAchievable(uuid, initialState, initialStaticState,
                     isSatisfied,
                     isDisqualified.isEmpty() ? null : isDisqualified,
+                    scriptReads,
+                    sharedMergePolicies,
                     backfillScript,
                     eventScripts.toArray(new EventClosureScript[0]));
         }
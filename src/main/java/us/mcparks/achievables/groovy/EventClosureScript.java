@@ -4,6 +4,7 @@ import groovy.lang.Closure;
 import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import us.mcparks.achievables.events.Event;
+import us.mcparks.achievables.triggers.EventPredicate;
 
 import java.io.Serializable;
 
@@ -12,4 +13,10 @@ public class EventClosureScript implements Serializable {
     final Class<? extends Event> eventClass;
     final Closure closure;
     final boolean isStatic;
+    // the events the handler is run for; it's skipped for any other event, without loading or saving any state
+    final EventPredicate where;
+
+    public static EventClosureScript of(Class<? extends Event> eventClass, Closure closure, boolean isStatic) {
+        return of(eventClass, closure, isStatic, EventPredicate.ANY);
+    }
 }
@@ -0,0 +1,159 @@
+package us.mcparks.achievables.groovy;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Limits how much work a single run of a BIGAL script (an event handler, activator, deactivator or backfill) may do, so
+ * one runaway achievement file can't stall every event.
+ *
+ * Every loop iteration, closure call and method call in a BIGAL script counts as one step. When a run takes more steps
+ * than {@code maxSteps}, or runs for longer than {@code maxTime}, the script is stopped with an
+ * {@link ExecutionBudgetExceededException}, and an achievable whose scripts are stopped {@code quarantineAfter} times
+ * (within the window, if there is one) is quarantined: its handlers stop running until
+ * {@link BigAlAchievable#releaseFromQuarantine()}. A run counts as soon as it goes over, even if the script catches the
+ * exception. Running out of stack counts as going over budget too. The time is only checked every so many steps, so a
+ * script that blocks (e.g. on I/O) isn't stopped.
+ *
+ * There's no budget unless one is set with {@link us.mcparks.achievables.Achievables#setExecutionBudget}; scripts
+ * already being run keep the budget they started with.
+ */
+public final class ExecutionBudget {
+    public static final ExecutionBudget UNLIMITED = new ExecutionBudget(0, 0, 0, 0);
+    /*
+     * Generous enough for any reasonable script, while still catching one that never stops. Steps only, since a GC pause
+     * or a lag spike can make any script take too long, and overruns only quarantine if they happen close together.
+     */
+    public static final ExecutionBudget DEFAULT = builder().maxSteps(1_000_000).quarantineAfter(3, 10, TimeUnit.MINUTES).build();
+
+    // a power of two
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+    private static final ThreadLocal<Meter> meters = ThreadLocal.withInitial(Meter::new);
+
+    // 0 for no limit
+    @Getter private final long maxSteps;
+    @Getter private final long maxNanos;
+    @Getter private final int quarantineAfter;
+    // overruns longer ago than this don't count towards quarantineAfter; 0 to count them all
+    @Getter private final long quarantineWindowNanos;
+
+    private ExecutionBudget(long maxSteps, long maxNanos, int quarantineAfter, long quarantineWindowNanos) {
+        this.maxSteps = maxSteps;
+        this.maxNanos = maxNanos;
+        this.quarantineAfter = quarantineAfter;
+        this.quarantineWindowNanos = quarantineWindowNanos;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean isLimited() {
+        return maxSteps > 0 || maxNanos > 0;
+    }
+
+    // Called by compiled BIGAL scripts at the start of every loop iteration, closure call and method call
+    public static void step() {
+        meters.get().step();
+    }
+
+    /**
+     * Starts metering a script run on this thread. Returns false, and meters nothing, if this budget has no limits or
+     * a run is already being metered on this thread (which then counts the steps); otherwise call {@link #end()} when
+     * the run is over. The run is reported to {@code overrun} the moment it first goes over, whatever the script then
+     * does with the exception.
+     */
+    public boolean begin(Consumer<ExecutionBudget> overrun) {
+        if (!isLimited()) {
+            return false;
+        }
+        Meter meter = meters.get();
+        if (meter.active) {
+            return false;
+        }
+        meter.start(this, overrun);
+        return true;
+    }
+
+    public static void end() {
+        meters.get().active = false;
+    }
+
+    private static class Meter {
+        boolean active;
+        long steps;
+        ExecutionBudget budget;
+        Consumer<ExecutionBudget> overrun;
+        long deadline;
+        String exceeded;
+
+        void start(ExecutionBudget budget, Consumer<ExecutionBudget> overrun) {
+            active = true;
+            steps = 0;
+            this.budget = budget;
+            this.overrun = overrun;
+            deadline = budget.maxNanos > 0 ? System.nanoTime() + budget.maxNanos : 0;
+            exceeded = null;
+        }
+
+        void step() {
+            if (!active) {
+                return;
+            }
+            if (exceeded != null) {
+                throw new ExecutionBudgetExceededException(exceeded);
+            }
+            steps++;
+            if (budget.maxSteps > 0 && steps > budget.maxSteps) {
+                exceeded = "Script took more than " + budget.maxSteps + " steps";
+            } else if (budget.maxNanos > 0 && (steps & (CLOCK_CHECK_INTERVAL - 1)) == 0 && System.nanoTime() - deadline > 0) {
+                exceeded = "Script ran for more than " + TimeUnit.NANOSECONDS.toMillis(budget.maxNanos) + " ms";
+            } else {
+                return;
+            }
+            overrun.accept(budget);
+            throw new ExecutionBudgetExceededException(exceeded);
+        }
+    }
+
+    public static class Builder {
+        long maxSteps;
+        long maxNanos;
+        int quarantineAfter;
+        long quarantineWindowNanos;
+
+        Builder() {
+        }
+
+        // Loop iterations, closure calls and method calls per run; 0 for no limit
+        public Builder maxSteps(long maxSteps) {
+            this.maxSteps = maxSteps;
+            return this;
+        }
+
+        public Builder maxTime(long time, TimeUnit unit) {
+            this.maxNanos = unit.toNanos(time);
+            return this;
+        }
+
+        // How many times an achievable's scripts may go over budget before it's quarantined; 0 to never quarantine
+        public Builder quarantineAfter(int quarantineAfter) {
+            this.quarantineAfter = quarantineAfter;
+            this.quarantineWindowNanos = 0;
+            return this;
+        }
+
+        // Only quarantines if that many overruns happen within the given time of each other
+        public Builder quarantineAfter(int quarantineAfter, long within, TimeUnit unit) {
+            this.quarantineAfter = quarantineAfter;
+            this.quarantineWindowNanos = unit.toNanos(within);
+            return this;
+        }
+
+        public ExecutionBudget build() {
+            return new ExecutionBudget(maxSteps, maxNanos, quarantineAfter, quarantineWindowNanos);
+        }
+    }
+}
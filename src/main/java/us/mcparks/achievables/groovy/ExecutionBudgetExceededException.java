@@ -0,0 +1,11 @@
+package us.mcparks.achievables.groovy;
+
+/**
+ * Thrown inside a BIGAL script that went over its {@link ExecutionBudget}. Catching it in the script doesn't help: the
+ * overrun has already been counted, and every loop iteration or call after that throws it again.
+ */
+public class ExecutionBudgetExceededException extends RuntimeException {
+    public ExecutionBudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,56 @@
+package us.mcparks.achievables.groovy;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * The state and shared keys an activator or deactivator reads, as worked out when its script was compiled. Its result
+ * only depends on these, so it can be reused until one of them is written.
+ *
+ * Written as "state.key" and "shared.key", or "state.*" and "shared.*" for a closure that uses the whole map.
+ */
+public final class StateReads implements Serializable {
+    final ImmutableSet<String> state;
+    final ImmutableSet<String> shared;
+    final boolean allState;
+    final boolean allShared;
+
+    private StateReads(ImmutableSet<String> state, ImmutableSet<String> shared, boolean allState, boolean allShared) {
+        this.state = state;
+        this.shared = shared;
+        this.allState = allState;
+        this.allShared = allShared;
+    }
+
+    public static StateReads of(Collection<String> reads) {
+        ImmutableSet.Builder<String> state = ImmutableSet.builder();
+        ImmutableSet.Builder<String> shared = ImmutableSet.builder();
+        boolean allState = false;
+        boolean allShared = false;
+        for (String read : reads) {
+            if (read.equals("state.*")) {
+                allState = true;
+            } else if (read.equals("shared.*")) {
+                allShared = true;
+            } else if (read.startsWith("state.")) {
+                state.add(read.substring("state.".length()));
+            } else if (read.startsWith("shared.")) {
+                shared.add(read.substring("shared.".length()));
+            } else {
+                throw new IllegalArgumentException("Not a state or shared key: " + read);
+            }
+        }
+        return new StateReads(state.build(), shared.build(), allState, allShared);
+    }
+
+    boolean readsShared() {
+        return allShared || !shared.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "state" + (allState ? "[*]" : state) + " shared" + (allShared ? "[*]" : shared);
+    }
+}
@@ -0,0 +1,65 @@
+package us.mcparks.achievables.groovy;
+
+import groovy.lang.Closure;
+import lombok.Getter;
+import us.mcparks.achievables.events.Event;
+import us.mcparks.achievables.framework.AchievablePlayer;
+import us.mcparks.achievables.framework.StateRecord;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Stands in for a BIGAL closure that was compiled with {@code compileStatic true}: the closure's body was moved into a
+ * statically compiled method of the script taking {@code (state, shared, event, player)} as parameters, which this
+ * calls directly instead of going through rehydrate and Groovy's dynamic dispatch.
+ *
+ * The method was compiled against the state layouts recorded here, which have to match the achievable's schemas.
+ */
+public class StaticallyCompiledClosure extends Closure<Object> {
+    private static final MethodType HANDLER_TYPE = MethodType.methodType(Object.class, StateRecord.class, StateRecord.class, Event.class, AchievablePlayer.class);
+
+    private final transient MethodHandle handle;
+    @Getter private final String methodName;
+    @Getter private final String stateLayout;
+    @Getter private final String sharedLayout;
+
+    public StaticallyCompiledClosure(Class<?> scriptClass, String methodName, String stateLayout, String sharedLayout) {
+        super(scriptClass);
+        this.methodName = methodName;
+        this.stateLayout = stateLayout;
+        this.sharedLayout = sharedLayout;
+        this.handle = findHandle(scriptClass, methodName);
+    }
+
+    private static MethodHandle findHandle(Class<?> scriptClass, String methodName) {
+        for (Method method : scriptClass.getMethods()) {
+            if (method.getName().equals(methodName) && Modifier.isStatic(method.getModifiers()) && method.getParameterCount() == 4) {
+                try {
+                    return MethodHandles.publicLookup().unreflect(method).asType(HANDLER_TYPE);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Cannot access compiled BIGAL handler " + methodName, e);
+                }
+            }
+        }
+        throw new IllegalStateException("Compiled BIGAL handler " + methodName + " not found in " + scriptClass.getName());
+    }
+
+    public Object invoke(StateRecord state, StateRecord shared, Event event, AchievablePlayer player) {
+        try {
+            return (Object) handle.invokeExact(state, shared, event, player);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    // lets it still be called like any other closure
+    public Object doCall(StateRecord state, StateRecord shared, Event event, AchievablePlayer player) {
+        return invoke(state, shared, event, player);
+    }
+}
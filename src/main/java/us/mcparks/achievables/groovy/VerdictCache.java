@@ -0,0 +1,136 @@
+package us.mcparks.achievables.groovy;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import us.mcparks.achievables.framework.AchievablePlayer;
+import us.mcparks.achievables.framework.MergeableSharedState;
+import us.mcparks.achievables.framework.StateTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The last result of each of an achievable's activators and deactivators, per player, for the ones whose {@link StateReads}
+ * are known. A result stays valid until one of the keys it read is written.
+ *
+ * Along with each result, the cache keeps a copy of the values the closure read. The result is only reused while the
+ * stored values are still equal to them, so it doesn't matter how a value was changed: by a handler, by the manager, or
+ * in place in the stored map. Shared keys with a merge policy are compared by their live values.
+ */
+final class VerdictCache {
+    // indexed like the verdicts: the activators, then the deactivators; null for closures that can't be cached
+    private final StateReads[] reads;
+    // players who haven't had anything evaluated for a while are dropped, so players who left don't pile up
+    private final Cache<AchievablePlayer, Verdict[]> byPlayer = CacheBuilder.newBuilder().expireAfterAccess(10, TimeUnit.MINUTES).build();
+
+    VerdictCache(StateReads[] reads) {
+        this.reads = reads;
+    }
+
+    boolean isEmpty() {
+        for (StateReads read : reads) {
+            if (read != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The cached result of the closure for the player, or null if there's no valid one
+    Boolean get(AchievablePlayer player, int index, Map<String, Object> state, Map<String, Object> shared, MergeableSharedState mergeable) {
+        if (reads[index] == null) {
+            return null;
+        }
+        Verdict[] verdicts = byPlayer.getIfPresent(player);
+        Verdict verdict = verdicts == null ? null : verdicts[index];
+        if (verdict == null || !verdict.read.matches(Read.of(reads[index], state, shared, mergeable, false))) {
+            return null;
+        }
+        return verdict.value;
+    }
+
+    /**
+     * Copies of the values each of the closures from the given index on reads (null for closures that can't be cached),
+     * to pass to put along with its result. Take them before the closures read the state, so that a change in between
+     * can only make the result look out of date, never the other way around.
+     */
+    Read[] read(int firstIndex, int count, Map<String, Object> state, Map<String, Object> shared, MergeableSharedState mergeable) {
+        Read[] read = new Read[count];
+        for (int i = 0; i < count; i++) {
+            StateReads stateReads = reads[firstIndex + i];
+            if (stateReads != null) {
+                read[i] = Read.of(stateReads, state, shared, mergeable, true);
+            }
+        }
+        return read;
+    }
+
+    void put(AchievablePlayer player, int index, Read read, boolean value) {
+        if (read == null) {
+            return;
+        }
+        Verdict[] verdicts = byPlayer.getIfPresent(player);
+        if (verdicts == null) {
+            verdicts = new Verdict[reads.length];
+            byPlayer.put(player, verdicts);
+        }
+        verdicts[index] = new Verdict(value, read);
+    }
+
+    // The values a closure read: its keys' values in the order of its StateReads, or the whole map for state.* and shared.*
+    static final class Read {
+        private final Object state;
+        private final Object shared;
+
+        private Read(Object state, Object shared) {
+            this.state = state;
+            this.shared = shared;
+        }
+
+        // copied only when they're kept; a lookup compares the stored values as they are
+        static Read of(StateReads reads, Map<String, Object> state, Map<String, Object> shared, MergeableSharedState mergeable, boolean copy) {
+            Object stateValues = reads.allState ? copy(state, copy) : values(reads.state.asList(), state, null, copy);
+            Object sharedValues = null;
+            if (reads.allShared) {
+                // live values are immutable, so they never need copying
+                sharedValues = mergeable == null ? copy(shared, copy) : new Object[]{copy(shared, copy), mergeable.getLiveValues()};
+            } else if (!reads.shared.isEmpty()) {
+                sharedValues = values(reads.shared.asList(), shared, mergeable, copy);
+            }
+            return new Read(stateValues, sharedValues);
+        }
+
+        private static Object[] values(Iterable<String> keys, Map<String, Object> stored, MergeableSharedState mergeable, boolean copy) {
+            List<Object> values = new ArrayList<>();
+            for (String key : keys) {
+                Object value = mergeable == null ? null : mergeable.getLiveValue(key);
+                if (value == null && stored != null) {
+                    value = stored.get(key);
+                }
+                values.add(copy(value, copy));
+            }
+            return values.toArray();
+        }
+
+        private static Object copy(Object value, boolean copy) {
+            return copy ? StateTemplate.freeze(value) : value;
+        }
+
+        boolean matches(Read other) {
+            return Objects.deepEquals(state, other.state) && Objects.deepEquals(shared, other.shared);
+        }
+    }
+
+    private static final class Verdict {
+        final boolean value;
+        final Read read;
+
+        Verdict(boolean value, Read read) {
+            this.value = value;
+            this.read = read;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package us.mcparks.achievables.metrics;
+
+import us.mcparks.achievables.framework.Achievable;
+import us.mcparks.achievables.framework.AchievablePlayer;
+import us.mcparks.achievables.triggers.AchievableTrigger;
+
+/**
+ * Told about the work achievables do as triggers are processed, so it can be timed and counted. Set one with
+ * {@link us.mcparks.achievables.Achievables#setMetrics}; by default nothing is recorded ({@link #NONE}).
+ *
+ * Every method is called on the thread doing the work, often a hot one, so implementations should only record and
+ * return. Nothing is timed at all while {@link #isEnabled()} is false. An {@link us.mcparks.achievables.AchievableManager}
+ * of your own can report its loads and saves with {@link #stateLoaded} and {@link #stateSaved}.
+ */
+public interface AchievableMetrics {
+    AchievableMetrics NONE = new AchievableMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    default boolean isEnabled() {
+        return true;
+    }
+
+    // One event handler ran; player is null for a shared handler
+    default void handlerTimed(Achievable achievable, AchievableTrigger trigger, AchievablePlayer player, long nanos) {
+    }
+
+    default void activatorsEvaluated(Achievable achievable, boolean satisfied) {
+    }
+
+    default void deactivatorsEvaluated(Achievable achievable, boolean disqualified) {
+    }
+
+    default void stateLoaded(long nanos) {
+    }
+
+    default void stateSaved(long nanos) {
+    }
+
+    default void achievableCompleted(Achievable achievable, AchievablePlayer player) {
+    }
+
+    // One of the achievable's scripts was stopped for going over the ExecutionBudget
+    default void budgetExceeded(Achievable achievable) {
+    }
+
+    default void achievableQuarantined(Achievable achievable) {
+    }
+}
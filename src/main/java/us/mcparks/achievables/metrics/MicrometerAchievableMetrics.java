@@ -0,0 +1,123 @@
+package us.mcparks.achievables.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import us.mcparks.achievables.framework.Achievable;
+import us.mcparks.achievables.framework.AchievablePlayer;
+import us.mcparks.achievables.triggers.AchievableTrigger;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes to a Micrometer {@link MeterRegistry}. Micrometer isn't a dependency of this library, so add
+ * {@code io.micrometer:micrometer-core} to your own project to use this.
+ *
+ * <ul>
+ *     <li>{@code achievables.handler}: a timer per achievable, trigger type and handler kind ({@code shared} or
+ *     {@code player}), with a percentile histogram</li>
+ *     <li>{@code achievables.activators} and {@code achievables.deactivators}: evaluations per achievable and result</li>
+ *     <li>{@code achievables.state.load} and {@code achievables.state.save}: timers</li>
+ *     <li>{@code achievables.completions}: a counter per achievable, whose rate is completions per second</li>
+ *     <li>{@code achievables.budget.exceeded} and {@code achievables.quarantined}: counters per achievable</li>
+ * </ul>
+ */
+public class MicrometerAchievableMetrics implements AchievableMetrics {
+    private final MeterRegistry registry;
+    // looking meters up in the registry on every call would cost more than recording to them
+    private final Map<HandlerKey, Timer> handlerTimers = new ConcurrentHashMap<>();
+    private final Map<UUID, Counter[]> activatorCounters = new ConcurrentHashMap<>();
+    private final Map<UUID, Counter[]> deactivatorCounters = new ConcurrentHashMap<>();
+    private final Map<UUID, Counter> completionCounters = new ConcurrentHashMap<>();
+    private final Map<UUID, Counter> budgetCounters = new ConcurrentHashMap<>();
+    private final Timer stateLoads;
+    private final Timer stateSaves;
+
+    public MicrometerAchievableMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.stateLoads = Timer.builder("achievables.state.load").register(registry);
+        this.stateSaves = Timer.builder("achievables.state.save").register(registry);
+    }
+
+    @Override
+    public void handlerTimed(Achievable achievable, AchievableTrigger trigger, AchievablePlayer player, long nanos) {
+        HandlerKey key = new HandlerKey(achievable.getUUID(), trigger.getType(), player == null);
+        Timer timer = handlerTimers.get(key);
+        if (timer == null) {
+            timer = handlerTimers.computeIfAbsent(key, k -> Timer.builder("achievables.handler")
+                    .tag("achievable", k.achievable.toString())
+                    .tag("trigger", k.type.toString())
+                    .tag("kind", k.shared ? "shared" : "player")
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void activatorsEvaluated(Achievable achievable, boolean satisfied) {
+        resultCounters(activatorCounters, "achievables.activators", achievable.getUUID())[satisfied ? 1 : 0].increment();
+    }
+
+    @Override
+    public void deactivatorsEvaluated(Achievable achievable, boolean disqualified) {
+        resultCounters(deactivatorCounters, "achievables.deactivators", achievable.getUUID())[disqualified ? 1 : 0].increment();
+    }
+
+    @Override
+    public void stateLoaded(long nanos) {
+        stateLoads.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void stateSaved(long nanos) {
+        stateSaves.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void achievableCompleted(Achievable achievable, AchievablePlayer player) {
+        counter(completionCounters, "achievables.completions", achievable.getUUID()).increment();
+    }
+
+    @Override
+    public void budgetExceeded(Achievable achievable) {
+        counter(budgetCounters, "achievables.budget.exceeded", achievable.getUUID()).increment();
+    }
+
+    // rare enough not to need caching
+    @Override
+    public void achievableQuarantined(Achievable achievable) {
+        Counter.builder("achievables.quarantined").tag("achievable", achievable.getUUID().toString()).register(registry).increment();
+    }
+
+    private Counter counter(Map<UUID, Counter> counters, String name, UUID achievable) {
+        Counter counter = counters.get(achievable);
+        return counter != null ? counter : counters.computeIfAbsent(achievable, uuid -> Counter.builder(name)
+                .tag("achievable", uuid.toString())
+                .register(registry));
+    }
+
+    // indexed by result, false then true
+    private Counter[] resultCounters(Map<UUID, Counter[]> counters, String name, UUID achievable) {
+        Counter[] result = counters.get(achievable);
+        if (result == null) {
+            result = counters.computeIfAbsent(achievable, uuid -> new Counter[]{
+                    Counter.builder(name).tag("achievable", uuid.toString()).tag("result", "false").register(registry),
+                    Counter.builder(name).tag("achievable", uuid.toString()).tag("result", "true").register(registry)});
+        }
+        return result;
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class HandlerKey {
+        private final UUID achievable;
+        private final AchievableTrigger.Type type;
+        private final boolean shared;
+    }
+}
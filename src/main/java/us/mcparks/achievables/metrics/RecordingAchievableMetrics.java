@@ -0,0 +1,154 @@
+package us.mcparks.achievables.metrics;
+
+import us.mcparks.achievables.framework.Achievable;
+import us.mcparks.achievables.framework.AchievablePlayer;
+import us.mcparks.achievables.triggers.AchievableTrigger;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps everything it's told in memory: handler latency histograms per achievable and per trigger type, how often each
+ * achievable's activators and deactivators were evaluated, state load and save timings, and completions. Read it from a
+ * command or a status page, or use a {@link MicrometerAchievableMetrics} to publish to a metrics system instead.
+ */
+public class RecordingAchievableMetrics implements AchievableMetrics {
+    private static final int RATE_WINDOW_SECONDS = 60;
+
+    private final Map<UUID, LatencyHistogram> handlersByAchievable = new ConcurrentHashMap<>();
+    private final Map<AchievableTrigger.Type, LatencyHistogram> handlersByTriggerType = new ConcurrentHashMap<>();
+    private final Map<UUID, LongAdder> activatorEvaluations = new ConcurrentHashMap<>();
+    private final Map<UUID, LongAdder> deactivatorEvaluations = new ConcurrentHashMap<>();
+    private final Map<UUID, LongAdder> budgetOverruns = new ConcurrentHashMap<>();
+    private final Set<UUID> quarantined = ConcurrentHashMap.newKeySet();
+    private final LatencyHistogram stateLoads = new LatencyHistogram();
+    private final LatencyHistogram stateSaves = new LatencyHistogram();
+    private final LongAdder completions = new LongAdder();
+    // completions per second over the last minute, in slots indexed by second
+    private final AtomicLongArray completionSlots = new AtomicLongArray(RATE_WINDOW_SECONDS);
+    private final AtomicLongArray completionSlotSeconds = new AtomicLongArray(RATE_WINDOW_SECONDS);
+    private final long startNanos = System.nanoTime();
+
+    @Override
+    public void handlerTimed(Achievable achievable, AchievableTrigger trigger, AchievablePlayer player, long nanos) {
+        histogram(handlersByAchievable, achievable.getUUID()).record(nanos);
+        histogram(handlersByTriggerType, trigger.getType()).record(nanos);
+    }
+
+    @Override
+    public void activatorsEvaluated(Achievable achievable, boolean satisfied) {
+        counter(activatorEvaluations, achievable.getUUID()).increment();
+    }
+
+    @Override
+    public void deactivatorsEvaluated(Achievable achievable, boolean disqualified) {
+        counter(deactivatorEvaluations, achievable.getUUID()).increment();
+    }
+
+    @Override
+    public void stateLoaded(long nanos) {
+        stateLoads.record(nanos);
+    }
+
+    @Override
+    public void stateSaved(long nanos) {
+        stateSaves.record(nanos);
+    }
+
+    @Override
+    public void achievableCompleted(Achievable achievable, AchievablePlayer player) {
+        completions.increment();
+        long second = currentSecond();
+        int slot = (int) (second % RATE_WINDOW_SECONDS);
+        long slotSecond = completionSlotSeconds.get(slot);
+        if (slotSecond != second && completionSlotSeconds.compareAndSet(slot, slotSecond, second)) {
+            // the slot last counted a minute or more ago
+            completionSlots.set(slot, 0);
+        }
+        completionSlots.incrementAndGet(slot);
+    }
+
+    @Override
+    public void budgetExceeded(Achievable achievable) {
+        counter(budgetOverruns, achievable.getUUID()).increment();
+    }
+
+    @Override
+    public void achievableQuarantined(Achievable achievable) {
+        quarantined.add(achievable.getUUID());
+    }
+
+    public Map<UUID, LatencyHistogram> getHandlerLatencyByAchievable() {
+        return Collections.unmodifiableMap(handlersByAchievable);
+    }
+
+    public Map<AchievableTrigger.Type, LatencyHistogram> getHandlerLatencyByTriggerType() {
+        return Collections.unmodifiableMap(handlersByTriggerType);
+    }
+
+    public long getActivatorEvaluations(UUID achievable) {
+        LongAdder counter = activatorEvaluations.get(achievable);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public long getDeactivatorEvaluations(UUID achievable) {
+        LongAdder counter = deactivatorEvaluations.get(achievable);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public long getBudgetOverruns(UUID achievable) {
+        LongAdder counter = budgetOverruns.get(achievable);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    // Every achievable that was ever quarantined, whether or not it's been released since
+    public Set<UUID> getQuarantined() {
+        return Collections.unmodifiableSet(quarantined);
+    }
+
+    public LatencyHistogram getStateLoads() {
+        return stateLoads;
+    }
+
+    public LatencyHistogram getStateSaves() {
+        return stateSaves;
+    }
+
+    public long getCompletions() {
+        return completions.sum();
+    }
+
+    // Averaged over the last full minute
+    public double getCompletionsPerSecond() {
+        long now = currentSecond();
+        long total = 0;
+        for (int slot = 0; slot < RATE_WINDOW_SECONDS; slot++) {
+            long second = completionSlotSeconds.get(slot);
+            if (second < now && second >= now - RATE_WINDOW_SECONDS) {
+                total += completionSlots.get(slot);
+            }
+        }
+        return (double) total / RATE_WINDOW_SECONDS;
+    }
+
+    // counted from 1, so a slot that was never used (second 0) is never in the window
+    private long currentSecond() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos) + 1;
+    }
+
+    private static <K> LatencyHistogram histogram(Map<K, LatencyHistogram> histograms, K key) {
+        LatencyHistogram histogram = histograms.get(key);
+        return histogram != null ? histogram : histograms.computeIfAbsent(key, k -> new LatencyHistogram());
+    }
+
+    private static <K> LongAdder counter(Map<K, LongAdder> counters, K key) {
+        LongAdder counter = counters.get(key);
+        return counter != null ? counter : counters.computeIfAbsent(key, k -> new LongAdder());
+    }
+}
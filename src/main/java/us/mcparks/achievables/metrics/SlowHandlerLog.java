@@ -0,0 +1,76 @@
+package us.mcparks.achievables.metrics;
+
+import us.mcparks.achievables.Achievables;
+import us.mcparks.achievables.framework.Achievable;
+import us.mcparks.achievables.framework.AchievablePlayer;
+import us.mcparks.achievables.triggers.AchievableTrigger;
+import us.mcparks.achievables.triggers.EventAchievableTrigger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs a warning for every event handler that takes longer than a threshold, naming the achievable and the event, and
+ * passes everything on to another {@link AchievableMetrics}:
+ *
+ * <pre>
+ * Achievables.getInstance().setMetrics(new SlowHandlerLog(new RecordingAchievableMetrics(), 5, TimeUnit.MILLISECONDS));
+ * </pre>
+ */
+public class SlowHandlerLog implements AchievableMetrics {
+    private final AchievableMetrics delegate;
+    private final long thresholdNanos;
+
+    public SlowHandlerLog(long threshold, TimeUnit unit) {
+        this(AchievableMetrics.NONE, threshold, unit);
+    }
+
+    public SlowHandlerLog(AchievableMetrics delegate, long threshold, TimeUnit unit) {
+        this.delegate = delegate;
+        this.thresholdNanos = unit.toNanos(threshold);
+    }
+
+    @Override
+    public void handlerTimed(Achievable achievable, AchievableTrigger trigger, AchievablePlayer player, long nanos) {
+        if (nanos >= thresholdNanos) {
+            Object event = trigger instanceof EventAchievableTrigger ? ((EventAchievableTrigger) trigger).getEvent() : null;
+            Achievables.getInstance().getLogger().warning(String.format("Slow %s handler in achievable %s took %.2f ms for %s",
+                    player == null ? "shared" : "player " + player, achievable.getUUID(), nanos / 1e6, event != null ? event : trigger));
+        }
+        delegate.handlerTimed(achievable, trigger, player, nanos);
+    }
+
+    @Override
+    public void activatorsEvaluated(Achievable achievable, boolean satisfied) {
+        delegate.activatorsEvaluated(achievable, satisfied);
+    }
+
+    @Override
+    public void deactivatorsEvaluated(Achievable achievable, boolean disqualified) {
+        delegate.deactivatorsEvaluated(achievable, disqualified);
+    }
+
+    @Override
+    public void stateLoaded(long nanos) {
+        delegate.stateLoaded(nanos);
+    }
+
+    @Override
+    public void stateSaved(long nanos) {
+        delegate.stateSaved(nanos);
+    }
+
+    @Override
+    public void achievableCompleted(Achievable achievable, AchievablePlayer player) {
+        delegate.achievableCompleted(achievable, player);
+    }
+
+    @Override
+    public void budgetExceeded(Achievable achievable) {
+        delegate.budgetExceeded(achievable);
+    }
+
+    @Override
+    public void achievableQuarantined(Achievable achievable) {
+        delegate.achievableQuarantined(achievable);
+    }
+}
@@ -0,0 +1,299 @@
+package us.mcparks.achievables.persistence;
+
+import us.mcparks.achievables.utils.AchievableGsonManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compact binary encoding of achievable state.
+ *
+ * Whole numbers are written as zigzag varints, and the top-level keys of a state as varint ids into a dictionary kept
+ * per achievable, so a state is mostly just its values. Decoding reads straight from the buffer it's given (e.g. a
+ * memory-mapped log) without copying it first. Like JSON, whole numbers are read back as {@code Long} and other numbers
+ * as {@code Double}; values of any other type are stored as JSON.
+ *
+ * The dictionaries have to be stored along with the states: a {@link KeyListener} is told about every key the moment
+ * it's given an id, before any state using it is encoded, and {@link #defineKey} puts the ids back when loading. An
+ * instance should only be used by one store.
+ */
+public class BinaryStateCodec implements StateCodec {
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte STRING = 5;
+    private static final byte LIST = 6;
+    private static final byte MAP = 7;
+    private static final byte JSON = 8;
+
+    public interface KeyListener {
+        /**
+         * Records a key that was just given an id. The key isn't in the dictionary until {@code define} is run, which
+         * the listener does once it's recorded, while still holding whatever lock it recorded it under, so that a
+         * copy of the dictionaries taken under that lock has every key recorded before it.
+         */
+        void keyAdded(UUID achievable, int id, String key, Runnable define) throws IOException;
+    }
+
+    private final Map<UUID, KeyDictionary> dictionaries = new ConcurrentHashMap<>();
+    private volatile KeyListener keyListener = (achievable, id, key, define) -> define.run();
+
+    public void setKeyListener(KeyListener keyListener) {
+        this.keyListener = keyListener;
+    }
+
+    @Override
+    public byte getFormat() {
+        return FORMAT_BINARY;
+    }
+
+    @Override
+    public byte[] encode(UUID achievable, Map<String, Object> state) throws IOException {
+        KeyDictionary dictionary = dictionary(achievable);
+        Output out = new Output(16 + state.size() * 4);
+        out.writeVarint(state.size());
+        for (Map.Entry<String, Object> entry : state.entrySet()) {
+            out.writeVarint(dictionary.idOf(achievable, entry.getKey(), keyListener));
+            writeValue(out, entry.getValue());
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Map<String, Object> decode(UUID achievable, ByteBuffer bytes) throws IOException {
+        KeyDictionary dictionary = dictionary(achievable);
+        int size = readVarint(bytes);
+        Map<String, Object> state = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            state.put(dictionary.keyOf(achievable, readVarint(bytes)), readValue(bytes));
+        }
+        return state;
+    }
+
+    // Restores a key id that was handed to the KeyListener before
+    public void defineKey(UUID achievable, int id, String key) {
+        dictionary(achievable).define(id, key);
+    }
+
+    // A copy of every dictionary, indexed by id
+    public Map<UUID, List<String>> getDictionaries() {
+        Map<UUID, List<String>> copy = new HashMap<>();
+        for (Map.Entry<UUID, KeyDictionary> entry : dictionaries.entrySet()) {
+            copy.put(entry.getKey(), Collections.unmodifiableList(Arrays.asList(entry.getValue().keys)));
+        }
+        return copy;
+    }
+
+    private KeyDictionary dictionary(UUID achievable) {
+        KeyDictionary dictionary = dictionaries.get(achievable);
+        return dictionary != null ? dictionary : dictionaries.computeIfAbsent(achievable, uuid -> new KeyDictionary());
+    }
+
+    private static void writeValue(Output out, Object value) {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.write(LONG);
+            long number = ((Number) value).longValue();
+            out.writeVarLong((number << 1) ^ (number >> 63));
+        } else if (value instanceof Number) {
+            out.write(DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof CharSequence) {
+            out.write(STRING);
+            out.writeString(value.toString());
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.write(LIST);
+            out.writeVarint(list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.write(MAP);
+            out.writeVarint(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                out.writeString(String.valueOf(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            out.write(JSON);
+            out.writeString(AchievableGsonManager.getGson().toJson(value));
+        }
+    }
+
+    private static Object readValue(ByteBuffer in) throws IOException {
+        byte tag = in.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case FALSE:
+                return false;
+            case TRUE:
+                return true;
+            case LONG: {
+                long zigzag = readVarLong(in);
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+            case DOUBLE:
+                return Double.longBitsToDouble(in.getLong());
+            case STRING:
+                return readString(in);
+            case LIST: {
+                int size = readVarint(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case MAP: {
+                int size = readVarint(in);
+                Map<String, Object> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+                for (int i = 0; i < size; i++) {
+                    map.put(readString(in), readValue(in));
+                }
+                return map;
+            }
+            case JSON:
+                return AchievableGsonManager.getGson().fromJson(readString(in), Object.class);
+            default:
+                throw new IOException("Unknown value tag " + tag + " in binary state");
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarint(in);
+        if (in.hasArray()) {
+            String string = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return string;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static int readVarint(ByteBuffer in) {
+        return (int) readVarLong(in);
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static class KeyDictionary {
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        // replaced, never changed in place, so readers don't need the lock
+        private volatile String[] keys = new String[0];
+
+        int idOf(UUID achievable, String key, KeyListener listener) throws IOException {
+            Integer id = ids.get(key);
+            if (id != null) {
+                return id;
+            }
+            synchronized (this) {
+                id = ids.get(key);
+                if (id != null) {
+                    return id;
+                }
+                int newId = keys.length;
+                // recorded before anything can be encoded with it
+                listener.keyAdded(achievable, newId, key, () -> define(newId, key));
+                if (!ids.containsKey(key)) {
+                    throw new IllegalStateException("KeyListener didn't define key " + key);
+                }
+                return newId;
+            }
+        }
+
+        String keyOf(UUID achievable, int id) throws IOException {
+            String[] keys = this.keys;
+            if (id >= keys.length || keys[id] == null) {
+                throw new IOException("Key " + id + " isn't in the dictionary of achievable " + achievable);
+            }
+            return keys[id];
+        }
+
+        synchronized void define(int id, String key) {
+            String[] updated = Arrays.copyOf(keys, Math.max(keys.length, id + 1));
+            updated[id] = key;
+            keys = updated;
+            ids.put(key, id);
+        }
+    }
+
+    private static class Output {
+        private byte[] bytes;
+        private int count;
+
+        Output(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        private void ensure(int extra) {
+            if (count + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, count + extra));
+            }
+        }
+
+        void write(byte b) {
+            ensure(1);
+            bytes[count++] = b;
+        }
+
+        void writeVarint(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[count++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[count++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[count++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, count, utf8.length);
+            count += utf8.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, count);
+        }
+    }
+}
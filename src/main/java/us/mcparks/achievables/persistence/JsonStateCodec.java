@@ -0,0 +1,32 @@
+package us.mcparks.achievables.persistence;
+
+import us.mcparks.achievables.AchievableManager;
+import us.mcparks.achievables.utils.AchievableGsonManager;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stores state as the same JSON the rest of the library uses. Slower and bigger than {@link BinaryStateCodec}, but
+ * readable, which helps when debugging or moving state somewhere else.
+ */
+public class JsonStateCodec implements StateCodec {
+    public static final JsonStateCodec INSTANCE = new JsonStateCodec();
+
+    @Override
+    public byte getFormat() {
+        return FORMAT_JSON;
+    }
+
+    @Override
+    public byte[] encode(UUID achievable, Map<String, Object> state) {
+        return AchievableGsonManager.getGson().toJson(state).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Map<String, Object> decode(UUID achievable, ByteBuffer bytes) {
+        return AchievableGsonManager.getGson().fromJson(StandardCharsets.UTF_8.decode(bytes).toString(), AchievableManager.achievableStateMapType);
+    }
+}
@@ -0,0 +1,711 @@
+package us.mcparks.achievables.persistence;
+
+import us.mcparks.achievables.Achievables;
+import us.mcparks.achievables.framework.StateDelta;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link StatePersistence} that keeps everything in a directory on local disk, with no external database.
+ *
+ * Every save is appended to the current log segment; once a segment is full a new one is started. Every so often (and
+ * on {@link #close()}) a snapshot of the whole state is written in the background, after which the segments it covers
+ * are deleted, so the log never grows without bound. On startup the newest snapshot is read and the segments after it
+ * are replayed (memory-mapped), which restores the state as of the last save. A record that was only partly written
+ * when the process died is detected by its checksum and cut off.
+ *
+ * States are written with a {@link StateCodec}, {@link BinaryStateCodec} by default, whose key dictionaries are logged
+ * along with the states. Each state records which codec wrote it, so switching codecs (e.g. to JSON, to read the files
+ * while debugging) keeps everything already stored readable, and the next snapshot rewrites it all with the new one.
+ *
+ * The whole state is also kept in memory, so loading a player never touches the disk.
+ */
+public class LogStatePersistence implements StatePersistence {
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    // "ACHV", at the start of every segment and snapshot, followed by the format version
+    private static final int MAGIC = 0x41434856;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    // length and checksum
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte PLAYER_STATE = 1;
+    private static final byte PLAYER_DELTA = 2;
+    private static final byte STATIC_STATE = 3;
+    private static final byte STATIC_DELTA = 4;
+    private static final byte COMPLETION = 5;
+    // last record of a complete snapshot
+    private static final byte END = 6;
+    // a key added to a BinaryStateCodec dictionary
+    private static final byte KEY = 7;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final boolean syncEveryWrite;
+    private final StateCodec codec;
+    // the codec if it's binary, otherwise only used to read states written before switching away from it
+    private final BinaryStateCodec binary;
+    private final ScheduledExecutorService snapshotter;
+    private final Object snapshotLock = new Object();
+
+    // all guarded by this
+    private final Map<String, PlayerEntry> players = new HashMap<>();
+    private final Map<UUID, Map<String, Object>> statics = new HashMap<>();
+    private FileChannel segment;
+    private long segmentNumber;
+    private long segmentPosition;
+    private boolean changedSinceSnapshot;
+    private boolean closed;
+
+    private LogStatePersistence(Builder builder) throws IOException {
+        this.directory = builder.directory;
+        this.segmentSize = builder.segmentSize;
+        this.syncEveryWrite = builder.syncEveryWrite;
+        this.codec = builder.codec;
+        this.binary = codec instanceof BinaryStateCodec ? (BinaryStateCodec) codec : new BinaryStateCodec();
+        Files.createDirectories(directory);
+        recover();
+        this.binary.setKeyListener((achievable, id, key, define) -> {
+            byte[] record = keyRecord(achievable, id, key);
+            // defined before a snapshot can start a new segment, so if the record is in a segment the snapshot deletes,
+            // the key is in the dictionaries it copies
+            synchronized (this) {
+                append(record);
+                define.run();
+            }
+        });
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "achievables-state-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, builder.snapshotInterval, builder.snapshotInterval, builder.snapshotIntervalUnit);
+    }
+
+    public static Builder builder(Path directory) {
+        return new Builder(directory);
+    }
+
+    public static LogStatePersistence open(Path directory) throws IOException {
+        return builder(directory).build();
+    }
+
+    @Override
+    public synchronized PersistedPlayer loadPlayer(String playerId) {
+        PlayerEntry entry = players.get(playerId);
+        if (entry == null) {
+            return PersistedPlayer.EMPTY;
+        }
+        Map<UUID, Map<String, Object>> states = new HashMap<>();
+        for (Map.Entry<UUID, Map<String, Object>> state : entry.states.entrySet()) {
+            states.put(state.getKey(), new HashMap<>(state.getValue()));
+        }
+        return new PersistedPlayer(states, new HashSet<>(entry.completed));
+    }
+
+    @Override
+    public synchronized Map<String, Object> loadStaticState(UUID achievable) {
+        Map<String, Object> state = statics.get(achievable);
+        return state == null ? null : new HashMap<>(state);
+    }
+
+    @Override
+    public void savePlayerState(String playerId, UUID achievable, Map<String, Object> state) throws IOException {
+        byte[] record = record(PLAYER_STATE, playerId, achievable, encodeState(achievable, state), null);
+        synchronized (this) {
+            append(record);
+            playerEntry(playerId).states.put(achievable, new HashMap<>(state));
+        }
+    }
+
+    @Override
+    public void savePlayerStateDelta(String playerId, UUID achievable, StateDelta delta) throws IOException {
+        if (delta.isFull()) {
+            savePlayerState(playerId, achievable, delta.getState());
+            return;
+        }
+        Map<String, Object> changed = delta.getChangedValues();
+        Set<String> removed = delta.getRemovedKeys();
+        byte[] record = record(PLAYER_DELTA, playerId, achievable, encodeState(achievable, changed), removed);
+        synchronized (this) {
+            append(record);
+            Map<UUID, Map<String, Object>> states = playerEntry(playerId).states;
+            states.put(achievable, applyDelta(states.get(achievable), changed, removed));
+        }
+    }
+
+    @Override
+    public void saveStaticState(UUID achievable, Map<String, Object> state) throws IOException {
+        byte[] record = record(STATIC_STATE, null, achievable, encodeState(achievable, state), null);
+        synchronized (this) {
+            append(record);
+            statics.put(achievable, new HashMap<>(state));
+        }
+    }
+
+    @Override
+    public void saveStaticStateDelta(UUID achievable, StateDelta delta) throws IOException {
+        if (delta.isFull()) {
+            saveStaticState(achievable, delta.getState());
+            return;
+        }
+        Map<String, Object> changed = delta.getChangedValues();
+        Set<String> removed = delta.getRemovedKeys();
+        byte[] record = record(STATIC_DELTA, null, achievable, encodeState(achievable, changed), removed);
+        synchronized (this) {
+            append(record);
+            statics.put(achievable, applyDelta(statics.get(achievable), changed, removed));
+        }
+    }
+
+    @Override
+    public void saveCompletion(String playerId, UUID achievable) throws IOException {
+        byte[] record = record(COMPLETION, playerId, achievable, null, null);
+        synchronized (this) {
+            append(record);
+            playerEntry(playerId).completed.add(achievable);
+        }
+    }
+
+    // Forces everything appended so far to disk
+    public synchronized void sync() throws IOException {
+        segment.force(false);
+    }
+
+    private PlayerEntry playerEntry(String playerId) {
+        return players.computeIfAbsent(playerId, id -> new PlayerEntry());
+    }
+
+    // Never changes the map in place, since a snapshot in progress may be reading it
+    private static Map<String, Object> applyDelta(Map<String, Object> state, Map<String, Object> changed, Collection<String> removed) {
+        Map<String, Object> updated = state == null ? new HashMap<>() : new HashMap<>(state);
+        updated.putAll(changed);
+        for (String key : removed) {
+            updated.remove(key);
+        }
+        return updated;
+    }
+
+    private void append(byte[] record) throws IOException {
+        if (closed) {
+            throw new IOException("State log is closed");
+        }
+        if (segmentPosition > FILE_HEADER_SIZE && segmentPosition + record.length > segmentSize) {
+            startSegment(segmentNumber + 1);
+        }
+        writeFully(segment, ByteBuffer.wrap(record));
+        segmentPosition += record.length;
+        changedSinceSnapshot = true;
+        if (syncEveryWrite) {
+            segment.force(false);
+        }
+    }
+
+    private void startSegment(long number) throws IOException {
+        if (segment != null) {
+            segment.force(false);
+            segment.close();
+        }
+        segmentNumber = number;
+        segment = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segmentPosition = segment.size();
+        segment.position(segmentPosition);
+        if (segmentPosition == 0) {
+            writeFully(segment, fileHeader());
+            segmentPosition = FILE_HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the whole state and deletes the log segments (and older snapshots) it makes redundant. This
+     * happens on its own every snapshot interval; the writes that arrive in the meantime go to a new segment.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            writeSnapshot();
+        }
+    }
+
+    private void writeSnapshot() throws IOException {
+        long covered;
+        Map<String, PlayerEntry> playersCopy = new HashMap<>();
+        Map<UUID, Map<String, Object>> staticsCopy;
+        synchronized (this) {
+            if (!changedSinceSnapshot || closed) {
+                return;
+            }
+            // the state maps are never changed in place, so copying the maps that hold them is enough
+            for (Map.Entry<String, PlayerEntry> entry : players.entrySet()) {
+                playersCopy.put(entry.getKey(), entry.getValue().copy());
+            }
+            staticsCopy = new HashMap<>(statics);
+            startSegment(segmentNumber + 1);
+            covered = segmentNumber;
+            changedSinceSnapshot = false;
+        }
+
+        Path temp = directory.resolve(name(covered, SNAPSHOT_SUFFIX) + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+            buffer.put(fileHeader());
+            for (Map.Entry<UUID, Map<String, Object>> state : staticsCopy.entrySet()) {
+                buffer = put(channel, buffer, record(STATIC_STATE, null, state.getKey(), encodeState(state.getKey(), state.getValue()), null));
+            }
+            for (Map.Entry<String, PlayerEntry> player : playersCopy.entrySet()) {
+                for (Map.Entry<UUID, Map<String, Object>> state : player.getValue().states.entrySet()) {
+                    buffer = put(channel, buffer, record(PLAYER_STATE, player.getKey(), state.getKey(), encodeState(state.getKey(), state.getValue()), null));
+                }
+                for (UUID completed : player.getValue().completed) {
+                    buffer = put(channel, buffer, record(COMPLETION, player.getKey(), completed, null, null));
+                }
+            }
+            // taken after encoding the states, so it has every key they use; it's read before them
+            if (codec == binary) {
+                for (Map.Entry<UUID, List<String>> dictionary : binary.getDictionaries().entrySet()) {
+                    List<String> keys = dictionary.getValue();
+                    for (int id = 0; id < keys.size(); id++) {
+                        if (keys.get(id) != null) {
+                            buffer = put(channel, buffer, keyRecord(dictionary.getKey(), id, keys.get(id)));
+                        }
+                    }
+                }
+            }
+            buffer = put(channel, buffer, record(END, null, null, null, null));
+            buffer.flip();
+            writeFully(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(name(covered, SNAPSHOT_SUFFIX)), StandardCopyOption.ATOMIC_MOVE);
+
+        // the snapshot holds everything from before segment `covered`
+        for (Map.Entry<Long, Path> file : list(SEGMENT_SUFFIX).entrySet()) {
+            if (file.getKey() < covered) {
+                Files.deleteIfExists(file.getValue());
+            }
+        }
+        for (Map.Entry<Long, Path> file : list(SNAPSHOT_SUFFIX).entrySet()) {
+            if (file.getKey() < covered) {
+                Files.deleteIfExists(file.getValue());
+            }
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (Exception ex) {
+            logger().log(Level.SEVERE, "Failed to snapshot achievable state in " + directory, ex);
+        }
+    }
+
+    private static ByteBuffer put(FileChannel channel, ByteBuffer buffer, byte[] record) throws IOException {
+        if (record.length > buffer.remaining()) {
+            buffer.flip();
+            writeFully(channel, buffer);
+            buffer.clear();
+            if (record.length > buffer.capacity()) {
+                writeFully(channel, ByteBuffer.wrap(record));
+                return buffer;
+            }
+        }
+        buffer.put(record);
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // Loads the newest complete snapshot and replays the segments written after it
+    private void recover() throws IOException {
+        TreeMap<Long, Path> snapshots = list(SNAPSHOT_SUFFIX);
+        long start = 0;
+        for (Map.Entry<Long, Path> snapshot : snapshots.descendingMap().entrySet()) {
+            if (readSnapshot(snapshot.getValue())) {
+                start = snapshot.getKey();
+                break;
+            }
+            logger().warning("Ignoring incomplete state snapshot " + snapshot.getValue());
+            players.clear();
+            statics.clear();
+        }
+
+        TreeMap<Long, Path> segments = list(SEGMENT_SUFFIX);
+        long last = start;
+        for (Map.Entry<Long, Path> file : segments.tailMap(start, true).entrySet()) {
+            long valid = replay(file.getValue());
+            if (valid < Files.size(file.getValue())) {
+                // a torn write at the end of the log; anything after it was never acknowledged
+                logger().warning("Truncating " + file.getValue() + " to its last complete record at " + valid);
+                try (FileChannel channel = FileChannel.open(file.getValue(), StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+            last = file.getKey();
+        }
+        startSegment(last);
+        changedSinceSnapshot = !segments.tailMap(start, true).isEmpty();
+    }
+
+    // The dictionary is at the end of a snapshot, so it's read in a first pass, which also checks the snapshot is complete
+    private boolean readSnapshot(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!readFileHeader(buffer, path)) {
+                return false;
+            }
+            for (boolean keys = true; ; keys = false) {
+                buffer.position(FILE_HEADER_SIZE);
+                while (true) {
+                    ByteBuffer body = nextRecord(buffer);
+                    if (body == null) {
+                        return false;
+                    }
+                    if (body.get(0) == END) {
+                        break;
+                    }
+                    if (keys == (body.get(0) == KEY)) {
+                        apply(body);
+                    }
+                }
+                if (!keys) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    // Returns how many bytes of the segment hold complete records
+    private long replay(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < FILE_HEADER_SIZE) {
+                return 0;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            readFileHeader(buffer, path);
+            while (true) {
+                int position = buffer.position();
+                ByteBuffer body = nextRecord(buffer);
+                if (body == null) {
+                    return position;
+                }
+                apply(body);
+            }
+        }
+    }
+
+    private static ByteBuffer fileHeader() {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        return header;
+    }
+
+    // false if the file ends before its header does
+    private static boolean readFileHeader(ByteBuffer buffer, Path path) throws IOException {
+        if (buffer.remaining() < FILE_HEADER_SIZE) {
+            return false;
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException(path + " isn't an achievable state file");
+        }
+        int version = buffer.getInt();
+        if (version > VERSION) {
+            throw new IOException(path + " was written by a newer version (format " + version + ")");
+        }
+        return true;
+    }
+
+    // The body of the next record, or null if there isn't a complete, intact one
+    private static ByteBuffer nextRecord(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            return null;
+        }
+        ByteBuffer body = buffer.slice();
+        body.limit(length);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        body.rewind();
+        buffer.position(buffer.position() + length);
+        return body;
+    }
+
+    private void apply(ByteBuffer body) throws IOException {
+        byte type = body.get();
+        String playerId = type == PLAYER_STATE || type == PLAYER_DELTA || type == COMPLETION ? readString(body) : null;
+        UUID achievable = new UUID(body.getLong(), body.getLong());
+        switch (type) {
+            case PLAYER_STATE:
+                playerEntry(playerId).states.put(achievable, decodeState(achievable, body));
+                break;
+            case PLAYER_DELTA: {
+                Map<String, Object> changed = decodeState(achievable, body);
+                Map<UUID, Map<String, Object>> states = playerEntry(playerId).states;
+                states.put(achievable, applyDelta(states.get(achievable), changed, readStrings(body)));
+                break;
+            }
+            case STATIC_STATE:
+                statics.put(achievable, decodeState(achievable, body));
+                break;
+            case STATIC_DELTA: {
+                Map<String, Object> changed = decodeState(achievable, body);
+                statics.put(achievable, applyDelta(statics.get(achievable), changed, readStrings(body)));
+                break;
+            }
+            case COMPLETION:
+                playerEntry(playerId).completed.add(achievable);
+                break;
+            case KEY:
+                binary.defineKey(achievable, body.getInt(), readString(body));
+                break;
+            default:
+                throw new IllegalStateException("Unknown state log record type " + type);
+        }
+    }
+
+    // [length][crc32 of body][type][player id, for player records][achievable][state][removed keys, for deltas]
+    private static byte[] record(byte type, String playerId, UUID achievable, byte[] state, Collection<String> removed) {
+        byte[] player = playerId == null ? null : playerId.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> removedKeys = new ArrayList<>();
+        int length = 1;
+        if (player != null) {
+            length += 4 + player.length;
+        }
+        if (achievable != null) {
+            length += 16;
+        }
+        if (state != null) {
+            length += 4 + state.length;
+        }
+        if (removed != null) {
+            length += 4;
+            for (String key : removed) {
+                byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+                removedKeys.add(bytes);
+                length += 4 + bytes.length;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length);
+        buffer.putInt(length).putInt(0).put(type);
+        if (player != null) {
+            buffer.putInt(player.length).put(player);
+        }
+        if (achievable != null) {
+            buffer.putLong(achievable.getMostSignificantBits()).putLong(achievable.getLeastSignificantBits());
+        }
+        if (state != null) {
+            buffer.putInt(state.length).put(state);
+        }
+        if (removed != null) {
+            buffer.putInt(removedKeys.size());
+            for (byte[] key : removedKeys) {
+                buffer.putInt(key.length).put(key);
+            }
+        }
+        return seal(buffer);
+    }
+
+    // [length][crc32 of body][type][achievable][id][key]
+    private static byte[] keyRecord(UUID achievable, int id, String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 16 + 4 + 4 + bytes.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length);
+        buffer.putInt(length).putInt(0).put(KEY);
+        buffer.putLong(achievable.getMostSignificantBits()).putLong(achievable.getLeastSignificantBits());
+        buffer.putInt(id).putInt(bytes.length).put(bytes);
+        return seal(buffer);
+    }
+
+    // Fills in the checksum of a record whose header and body have been written
+    private static byte[] seal(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, buffer.capacity() - HEADER_SIZE);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    private static byte[] readBytes(ByteBuffer body) {
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer body) {
+        return new String(readBytes(body), StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readStrings(ByteBuffer body) {
+        int count = body.getInt();
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            strings.add(readString(body));
+        }
+        return strings;
+    }
+
+    // The codec's format, then what it encoded
+    private byte[] encodeState(UUID achievable, Map<String, Object> state) throws IOException {
+        byte[] encoded = codec.encode(achievable, state);
+        byte[] bytes = new byte[encoded.length + 1];
+        bytes[0] = codec.getFormat();
+        System.arraycopy(encoded, 0, bytes, 1, encoded.length);
+        return bytes;
+    }
+
+    // Decodes the state in place, without copying it out of the record
+    private Map<String, Object> decodeState(UUID achievable, ByteBuffer body) throws IOException {
+        int length = body.getInt();
+        ByteBuffer state = body.slice();
+        state.limit(length);
+        body.position(body.position() + length);
+        return codecFor(state.get()).decode(achievable, state);
+    }
+
+    private StateCodec codecFor(byte format) throws IOException {
+        if (format == codec.getFormat()) {
+            return codec;
+        } else if (format == StateCodec.FORMAT_BINARY) {
+            return binary;
+        } else if (format == StateCodec.FORMAT_JSON) {
+            return JsonStateCodec.INSTANCE;
+        }
+        throw new IOException("Unknown state format " + format);
+    }
+
+    private TreeMap<Long, Path> list(String suffix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + suffix)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(0, name.length() - suffix.length())), path);
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        return files;
+    }
+
+    // the store is usually opened before Achievables is initialized
+    private static Logger logger() {
+        Achievables achievables = Achievables.getInstance();
+        return achievables != null ? achievables.getLogger() : Logger.getGlobal();
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(name(number, SEGMENT_SUFFIX));
+    }
+
+    private static String name(long number, String suffix) {
+        return String.format("%020d%s", number, suffix);
+    }
+
+    // Takes a final snapshot, so the next startup doesn't have to replay anything
+    @Override
+    public void close() throws IOException {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+        synchronized (this) {
+            closed = true;
+            segment.force(true);
+            segment.close();
+        }
+    }
+
+    private static class PlayerEntry {
+        final Map<UUID, Map<String, Object>> states = new HashMap<>();
+        final Set<UUID> completed = new HashSet<>();
+
+        PlayerEntry copy() {
+            PlayerEntry copy = new PlayerEntry();
+            copy.states.putAll(states);
+            copy.completed.addAll(completed);
+            return copy;
+        }
+    }
+
+    public static class Builder {
+        final Path directory;
+        long segmentSize = 64L << 20;
+        long snapshotInterval = 10;
+        TimeUnit snapshotIntervalUnit = TimeUnit.MINUTES;
+        boolean syncEveryWrite = false;
+        StateCodec codec = new BinaryStateCodec();
+
+        Builder(Path directory) {
+            this.directory = directory;
+        }
+
+        // A new segment is started once the current one would grow past this many bytes
+        public Builder segmentSize(long segmentSize) {
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        public Builder snapshotInterval(long snapshotInterval, TimeUnit unit) {
+            this.snapshotInterval = snapshotInterval;
+            this.snapshotIntervalUnit = unit;
+            return this;
+        }
+
+        // fsync after every save, so nothing is lost even if the machine (not just the process) goes down
+        public Builder syncEveryWrite(boolean syncEveryWrite) {
+            this.syncEveryWrite = syncEveryWrite;
+            return this;
+        }
+
+        // e.g. JsonStateCodec.INSTANCE to be able to read the files; a BinaryStateCodec can't be shared with another store
+        public Builder codec(StateCodec codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        public LogStatePersistence build() throws IOException {
+            if (segmentSize < 1 || snapshotInterval < 1) {
+                throw new IllegalArgumentException("segmentSize and snapshotInterval must be positive");
+            }
+            return new LogStatePersistence(this);
+        }
+    }
+}
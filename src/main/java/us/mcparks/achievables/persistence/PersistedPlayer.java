@@ -0,0 +1,22 @@
+package us.mcparks.achievables.persistence;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * What a {@link StatePersistence} has stored for one player: their state in each achievable, and the achievables they've
+ * completed.
+ */
+@Getter
+@AllArgsConstructor
+public class PersistedPlayer {
+    public static final PersistedPlayer EMPTY = new PersistedPlayer(Collections.emptyMap(), Collections.emptySet());
+
+    private final Map<UUID, Map<String, Object>> states;
+    private final Set<UUID> completed;
+}
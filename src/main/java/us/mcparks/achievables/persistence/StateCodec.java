@@ -0,0 +1,24 @@
+package us.mcparks.achievables.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Turns achievable state into bytes for storage and back.
+ *
+ * Every codec has its own format byte, which stores write in front of each encoded state, so states written with one
+ * codec can still be read after switching to another.
+ */
+public interface StateCodec {
+    byte FORMAT_JSON = 1;
+    byte FORMAT_BINARY = 2;
+
+    byte getFormat();
+
+    byte[] encode(UUID achievable, Map<String, Object> state) throws IOException;
+
+    // Reads the state from the buffer's position up to its limit
+    Map<String, Object> decode(UUID achievable, ByteBuffer bytes) throws IOException;
+}
@@ -0,0 +1,66 @@
+package us.mcparks.achievables.persistence;
+
+import us.mcparks.achievables.framework.StateDelta;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Where an {@link us.mcparks.achievables.InMemoryAchievableManager} loads state from and saves it to. Players are
+ * identified by the id the manager was given for them, achievables by their UUID.
+ *
+ * Saves are called on whatever thread processed the trigger, possibly several at once (but never for the same player
+ * at the same time), so implementations must be thread-safe.
+ */
+public interface StatePersistence extends AutoCloseable {
+    // Keeps nothing; state lasts as long as the manager does
+    StatePersistence NONE = new StatePersistence() {
+        @Override
+        public PersistedPlayer loadPlayer(String playerId) {
+            return PersistedPlayer.EMPTY;
+        }
+
+        @Override
+        public Map<String, Object> loadStaticState(UUID achievable) {
+            return null;
+        }
+
+        @Override
+        public void savePlayerState(String playerId, UUID achievable, Map<String, Object> state) {
+        }
+
+        @Override
+        public void saveStaticState(UUID achievable, Map<String, Object> state) {
+        }
+
+        @Override
+        public void saveCompletion(String playerId, UUID achievable) {
+        }
+    };
+
+    // Everything stored for the player, or PersistedPlayer.EMPTY
+    PersistedPlayer loadPlayer(String playerId) throws IOException;
+
+    // null if nothing was stored
+    Map<String, Object> loadStaticState(UUID achievable) throws IOException;
+
+    void savePlayerState(String playerId, UUID achievable, Map<String, Object> state) throws IOException;
+
+    // Override to store only the changed keys
+    default void savePlayerStateDelta(String playerId, UUID achievable, StateDelta delta) throws IOException {
+        savePlayerState(playerId, achievable, delta.getState());
+    }
+
+    void saveStaticState(UUID achievable, Map<String, Object> state) throws IOException;
+
+    default void saveStaticStateDelta(UUID achievable, StateDelta delta) throws IOException {
+        saveStaticState(achievable, delta.getState());
+    }
+
+    void saveCompletion(String playerId, UUID achievable) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
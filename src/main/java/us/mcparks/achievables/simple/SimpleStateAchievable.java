@@ -11,10 +11,14 @@ import us.mcparks.achievables.Achievables;
 import us.mcparks.achievables.events.PlayerEvent;
 import us.mcparks.achievables.framework.AbstractStatefulAchievable;
 import us.mcparks.achievables.framework.AchievablePlayer;
+import us.mcparks.achievables.framework.StateDelta;
+import us.mcparks.achievables.framework.StateRecord;
+import us.mcparks.achievables.metrics.AchievableMetrics;
 import us.mcparks.achievables.utils.AchievableGsonManager;
 import us.mcparks.achievables.utils.GroovyEvaluator;
 import us.mcparks.achievables.triggers.AchievableTrigger;
 import us.mcparks.achievables.triggers.EventAchievableTrigger;
+import us.mcparks.achievables.triggers.TriggerTypeIndex;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 
@@ -25,6 +29,8 @@ public class SimpleStateAchievable extends AbstractStatefulAchievable {
     @Language("groovy")
     String isDisqualifiedScript;
     Multimap<AchievableTrigger.Type, String> eventHandlers;
+    // built lazily from eventHandlers, which Gson fills in after construction
+    private transient volatile TriggerTypeIndex<String> eventHandlerIndex;
     transient GroovyEvaluator evaluator = new GroovyEvaluator();
     @EqualsAndHashCode.Include
     UUID uuid;
@@ -42,7 +48,7 @@ public class SimpleStateAchievable extends AbstractStatefulAchievable {
         this.isDisqualifiedScript = isDisqualified;
 
         for (EventScript handler : eventScripts) {
-            this.eventHandlers.put(new AchievableTrigger.Type(handler.eventClass.getCanonicalName()), handler.scriptText);
+            this.eventHandlers.put(AchievableTrigger.Type.of(handler.eventClass), handler.scriptText);
         }
     }
 
@@ -72,6 +78,7 @@ public class SimpleStateAchievable extends AbstractStatefulAchievable {
     @Override
     public boolean isSatisfied(AchievablePlayer player) {
         boolean result = (boolean) runScriptForPlayer(player, isSatisfiedScript);
+        Achievables.getInstance().getMetrics().activatorsEvaluated(this, result);
         return result;
     }
 
@@ -79,7 +86,9 @@ public class SimpleStateAchievable extends AbstractStatefulAchievable {
         if (isDisqualifiedScript == null) {
             return false;
         } else {
-            return (boolean) runScriptForPlayer(player, isDisqualifiedScript);
+            boolean result = (boolean) runScriptForPlayer(player, isDisqualifiedScript);
+            Achievables.getInstance().getMetrics().deactivatorsEvaluated(this, result);
+            return result;
         }
     }
 
@@ -91,12 +100,13 @@ public class SimpleStateAchievable extends AbstractStatefulAchievable {
                 return;
             }
 
-            if (eventHandlers.containsKey(trigger.getType())) {
-                eventHandlers.get(trigger.getType()).forEach(
+            if (getEventHandlerIndex().matches(trigger.getType())) {
+                getEventHandlerIndex().get(trigger.getType()).forEach(
                         script -> {
-                            runScriptForPlayer(player, script, Maps.of("event", ((EventAchievableTrigger) trigger).getEvent()));
+                            StateRecord state = getPlayerStateSchema().newRecord(getPlayerState(player));
+                            runHandler(player, state, script, trigger);
                             try {
-                                Achievables.getInstance().getAchievableManager().setPlayerState(player, this, (Map<String, Object>) evaluator.getVariable("state"), savePlayerState);
+                                Achievables.getInstance().getAchievableManager().applyPlayerStateDelta(player, this, StateDelta.of(state), savePlayerState);
                             } catch (ExecutionException e) {
                                 throw new RuntimeException(e);
                             }
@@ -115,6 +125,14 @@ public class SimpleStateAchievable extends AbstractStatefulAchievable {
         }
     }
 
+    private TriggerTypeIndex<String> getEventHandlerIndex() {
+        TriggerTypeIndex<String> index = eventHandlerIndex;
+        if (index == null) {
+            index = eventHandlerIndex = new TriggerTypeIndex<>(eventHandlers);
+        }
+        return index;
+    }
+
     @Override
     public UUID getUUID() {
         return uuid;
@@ -129,25 +147,34 @@ public class SimpleStateAchievable extends AbstractStatefulAchievable {
     }
 
     private Object runScriptForPlayer(AchievablePlayer player, String script, Map<String, Object> vars) {
-        evaluator.setVariable("state", new HashMap<>(getPlayerState(player)));
-        evaluator.setVariable("player", player);
-
+        return runScript(player, new HashMap<>(getPlayerState(player)), script, vars);
+    }
 
-        if (vars != null) {
-            for (Map.Entry<String,Object> entry : vars.entrySet()) {
-                evaluator.setVariable(entry.getKey(), entry.getValue());
-            }
+    // Runs an event handler, timing it if there are metrics to record it to
+    private void runHandler(AchievablePlayer player, Map<String, Object> state, String script, AchievableTrigger trigger) {
+        Map<String, Object> vars = Maps.of("event", ((EventAchievableTrigger) trigger).getEvent());
+        AchievableMetrics metrics = Achievables.getInstance().getMetrics();
+        if (!metrics.isEnabled()) {
+            runScript(player, state, script, vars);
+            return;
         }
+        long start = System.nanoTime();
+        try {
+            runScript(player, state, script, vars);
+        } finally {
+            metrics.handlerTimed(this, trigger, player, System.nanoTime() - start);
+        }
+    }
 
-        Object result = evaluator.evaluateExpression(script + "()");
+    // The variables are passed to this evaluation only, so several threads can run scripts at the same time
+    private Object runScript(AchievablePlayer player, Map<String, Object> state, String script, Map<String, Object> vars) {
+        Map<String, Object> variables = new HashMap<>();
         if (vars != null) {
-            for (Map.Entry<String,Object> entry : vars.entrySet()) {
-                evaluator.removeVariable(entry.getKey());
-            }
+            variables.putAll(vars);
         }
-
-        return result;
-
+        variables.put("state", state);
+        variables.put("player", player);
+        return evaluator.evaluateExpression(script + "()", variables);
     }
 
     static class ScriptHolder {
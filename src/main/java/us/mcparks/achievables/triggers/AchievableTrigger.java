@@ -1,16 +1,105 @@
 package us.mcparks.achievables.triggers;
 
-import lombok.AllArgsConstructor;
-import lombok.EqualsAndHashCode;
+import com.google.common.collect.ImmutableList;
+import us.mcparks.achievables.framework.AchievablePlayer;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public interface AchievableTrigger {
     Type getType();
 
+    // The single player this trigger is about, or null if it may concern any player
+    default AchievablePlayer getTargetPlayer() {
+        return null;
+    }
+
+
+    /**
+     * Identifies what kind of trigger something is (for events, the event class's canonical name).
+     *
+     * Use {@link #of(String)} or {@link #of(Class)} to get the canonical, interned instance. Types made from a class also
+     * know the types of all of that class's superclasses and interfaces ({@link #getHierarchy()}), which is how a
+     * listener for a base event type gets handed its subclasses.
+     */
+    final class Type {
+        private static final ConcurrentMap<String, Type> interned = new ConcurrentHashMap<>();
+        private static final ClassValue<Type> byClass = new ClassValue<Type>() {
+            @Override
+            protected Type computeValue(Class<?> type) {
+                Type interned = of(keyOf(type));
+                if (interned.hierarchy == null) {
+                    ImmutableList.Builder<Type> hierarchy = ImmutableList.builder();
+                    hierarchy.add(interned);
+                    for (Class<?> supertype : supertypesOf(type)) {
+                        hierarchy.add(of(keyOf(supertype)));
+                    }
+                    interned.hierarchy = hierarchy.build();
+                }
+                return interned;
+            }
+        };
+
+        final String key;
+        private final int hash;
+        private volatile List<Type> hierarchy;
+
+        public Type(String key) {
+            this.key = key;
+            this.hash = key.hashCode();
+        }
+
+        public static Type of(String key) {
+            Type type = interned.get(key);
+            return type != null ? type : interned.computeIfAbsent(key, Type::new);
+        }
+
+        public static Type of(Class<?> type) {
+            return byClass.get(type);
+        }
+
+        // This type followed by every type it should also match as (its superclasses and interfaces, if it has a class)
+        public List<Type> getHierarchy() {
+            List<Type> hierarchy = this.hierarchy;
+            return hierarchy != null ? hierarchy : Collections.singletonList(this);
+        }
+
+        private static String keyOf(Class<?> type) {
+            return type.getCanonicalName() != null ? type.getCanonicalName() : type.getName();
+        }
+
+        // Every superclass and interface of the class, nearest first, not including Object
+        private static Set<Class<?>> supertypesOf(Class<?> type) {
+            Set<Class<?>> supertypes = new LinkedHashSet<>();
+            Deque<Class<?>> toVisit = new ArrayDeque<>();
+            toVisit.add(type);
+            while (!toVisit.isEmpty()) {
+                Class<?> current = toVisit.poll();
+                if (current.getSuperclass() != null && current.getSuperclass() != Object.class && supertypes.add(current.getSuperclass())) {
+                    toVisit.add(current.getSuperclass());
+                }
+                for (Class<?> implemented : current.getInterfaces()) {
+                    if (supertypes.add(implemented)) {
+                        toVisit.add(implemented);
+                    }
+                }
+            }
+            return supertypes;
+        }
 
-    @AllArgsConstructor
-    @EqualsAndHashCode
-    static class Type {
-        @EqualsAndHashCode.Include String key;
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Type)) return false;
+            Type other = (Type) o;
+            return hash == other.hash && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
 
         @Override
         public String toString() {
@@ -0,0 +1,39 @@
+package us.mcparks.achievables.triggers;
+
+import us.mcparks.achievables.Achievables;
+import us.mcparks.achievables.framework.Achievable;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Processes triggers on the thread that submits them, one achievable after the other.
+ */
+public class DirectTriggerExecutor implements TriggerExecutor {
+    public static final DirectTriggerExecutor INSTANCE = new DirectTriggerExecutor();
+
+    // one failing achievable doesn't stop the rest
+    @Override
+    public void execute(AchievableTrigger trigger, Collection<Achievable> achievables) {
+        for (Achievable achievable : achievables) {
+            try {
+                achievable.process(trigger);
+            } catch (Exception ex) {
+                Achievables.getInstance().getLogger().log(Level.SEVERE, "Error routing trigger " + trigger + " to achievable " + achievable.getUUID().toString(), ex);
+            }
+        }
+    }
+
+    // each achievable handles the whole batch in one go
+    @Override
+    public void execute(List<AchievableTrigger> triggers, Collection<Achievable> achievables) {
+        for (Achievable achievable : achievables) {
+            try {
+                achievable.process(triggers);
+            } catch (Exception ex) {
+                Achievables.getInstance().getLogger().log(Level.SEVERE, "Error routing " + triggers.size() + " triggers to achievable " + achievable.getUUID().toString(), ex);
+            }
+        }
+    }
+}
@@ -2,28 +2,38 @@ package us.mcparks.achievables.triggers;
 
 import lombok.Getter;
 import us.mcparks.achievables.events.Event;
+import us.mcparks.achievables.events.PlayerEvent;
+import us.mcparks.achievables.framework.AchievablePlayer;
 
 public class EventAchievableTrigger implements AchievableTrigger {
 
     Class<?> eventClass;
     @Getter Event event;
+    final Type type;
 
     public EventAchievableTrigger(Event event) {
         this.eventClass = event.getClass();
         this.event = event;
+        this.type = Type.of(eventClass);
     }
 
     public EventAchievableTrigger(Class<?> event) {
         eventClass = event;
+        this.type = Type.of(eventClass);
     }
 
     @Override
     public Type getType() {
-        return new Type(eventClass.getCanonicalName());
+        return type;
+    }
+
+    @Override
+    public AchievablePlayer getTargetPlayer() {
+        return event instanceof PlayerEvent ? ((PlayerEvent) event).getApplicablePlayer() : null;
     }
 
     @Override
     public String toString() {
-        return eventClass.getCanonicalName();
+        return type.toString();
     }
 }
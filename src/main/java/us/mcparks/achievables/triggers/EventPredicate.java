@@ -0,0 +1,107 @@
+package us.mcparks.achievables.triggers;
+
+import com.google.common.collect.ImmutableMap;
+import groovy.lang.GroovySystem;
+import groovy.lang.MissingPropertyException;
+import lombok.EqualsAndHashCode;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import us.mcparks.achievables.events.Event;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Matches the events whose properties have the given values, e.g. the {@code where: [rideId: 32]} of a BIGAL handler.
+ *
+ * Properties are read the way a script would read {@code event.rideId}, and compared like Groovy's {@code ==} compares
+ * numbers and strings: {@code 32}, {@code 32L} and {@code 32.0} are all the same value, as are a String and a GString.
+ * Use {@link #normalize} on a value before looking it up in anything keyed by values.
+ */
+@EqualsAndHashCode
+public final class EventPredicate implements Serializable {
+    public static final EventPredicate ANY = new EventPredicate(ImmutableMap.of());
+
+    private final ImmutableMap<String, Object> values;
+
+    private EventPredicate(ImmutableMap<String, Object> values) {
+        this.values = values;
+    }
+
+    public static EventPredicate of(Map<String, ?> values) {
+        if (values == null || values.isEmpty()) {
+            return ANY;
+        }
+        Map<String, Object> normalized = new LinkedHashMap<>();
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            normalized.put(entry.getKey(), normalize(entry.getValue()));
+        }
+        return new EventPredicate(ImmutableMap.copyOf(normalized));
+    }
+
+    public boolean test(Event event) {
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (!entry.getValue().equals(normalize(property(event, entry.getKey())))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isAny() {
+        return values.isEmpty();
+    }
+
+    // The required value of each property, normalized
+    public ImmutableMap<String, Object> getValues() {
+        return values;
+    }
+
+    // The event's value of the property, or a value that matches nothing if it doesn't have that property
+    public static Object property(Event event, String name) {
+        try {
+            return InvokerHelper.getProperty(event, name);
+        } catch (MissingPropertyException e) {
+            return Missing.INSTANCE;
+        }
+    }
+
+    public static boolean hasProperty(Class<? extends Event> eventClass, String name) {
+        return GroovySystem.getMetaClassRegistry().getMetaClass(eventClass).hasProperty(null, name) != null;
+    }
+
+    // Whole numbers as Long, other numbers as Double and character sequences as String
+    public static Object normalize(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        } else if (value instanceof BigInteger && ((BigInteger) value).bitLength() < 64) {
+            return ((BigInteger) value).longValue();
+        } else if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            if (number == Math.rint(number) && Math.abs(number) < 0x1p63) {
+                return (long) number;
+            }
+            return number;
+        } else if (value instanceof CharSequence) {
+            return value.toString();
+        } else if (value == null) {
+            return Null.INSTANCE;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return values.toString();
+    }
+
+    // Stands in for null, which can't be a key or a value of an immutable map
+    private enum Null {
+        INSTANCE
+    }
+
+    private enum Missing {
+        INSTANCE
+    }
+}
@@ -0,0 +1,210 @@
+package us.mcparks.achievables.triggers;
+
+import us.mcparks.achievables.Achievables;
+import us.mcparks.achievables.framework.Achievable;
+import us.mcparks.achievables.framework.AchievablePlayer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Processes triggers off the submitting thread, with players spread over a pool of worker "lanes".
+ *
+ * Every trigger first goes through a single shared lane, which runs {@link Achievable#processShared} for it (so handlers of
+ * shared state see triggers one at a time, in the order they were submitted) and then hands each player's part of the
+ * work to that player's lane. A player always maps to the same lane and every lane runs its work in order, so each
+ * player still sees their triggers in submission order, while different players are processed in parallel.
+ *
+ * The {@link us.mcparks.achievables.AchievableManager} has to be safe to call from several threads at once, although it is
+ * never called for the same player from two threads at the same time.
+ */
+public class PlayerStripedTriggerExecutor implements TriggerExecutor {
+    private final ExecutorService sharedLane;
+    private final ExecutorService[] playerLanes;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Object idleMonitor = new Object();
+
+    public PlayerStripedTriggerExecutor() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public PlayerStripedTriggerExecutor(int playerLanes) {
+        this.sharedLane = Executors.newSingleThreadExecutor(threadFactory("achievables-shared"));
+        this.playerLanes = new ExecutorService[playerLanes];
+        for (int lane = 0; lane < playerLanes; lane++) {
+            this.playerLanes[lane] = Executors.newSingleThreadExecutor(threadFactory("achievables-players-" + lane));
+        }
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void execute(AchievableTrigger trigger, Collection<Achievable> achievables) {
+        submit(sharedLane, () -> {
+            List<List<Runnable>> work = newLaneWork();
+            dispatch(trigger, achievables, work);
+            submitLaneWork(work);
+        });
+    }
+
+    // The whole batch goes to each lane as a single task
+    @Override
+    public void execute(List<AchievableTrigger> triggers, Collection<Achievable> achievables) {
+        submit(sharedLane, () -> {
+            List<List<Runnable>> work = newLaneWork();
+            for (AchievableTrigger trigger : triggers) {
+                dispatch(trigger, achievables, work);
+            }
+            submitLaneWork(work);
+        });
+    }
+
+    // Runs on the shared lane
+    private void dispatch(AchievableTrigger trigger, Collection<Achievable> achievables, List<List<Runnable>> work) {
+        AchievablePlayer target = trigger.getTargetPlayer();
+        for (Achievable achievable : achievables) {
+            boolean sharedStateChanged = false;
+            try {
+                sharedStateChanged = achievable.processShared(trigger);
+            } catch (Exception ex) {
+                Achievables.getInstance().getLogger().log(Level.SEVERE, "Error routing trigger " + trigger + " to achievable " + achievable.getUUID().toString(), ex);
+            }
+
+            if (achievable.handlesPlayers(trigger)) {
+                if (target != null) {
+                    if (achievable.isApplicablePlayer(target)) {
+                        work.get(laneOf(target)).add(() -> processPlayer(achievable, target, trigger));
+                    }
+                } else {
+                    for (AchievablePlayer player : achievable.getApplicablePlayers()) {
+                        work.get(laneOf(player)).add(() -> processPlayer(achievable, player, trigger));
+                    }
+                }
+            }
+
+            if (sharedStateChanged) {
+                addReevaluation(work, achievable);
+            }
+        }
+    }
+
+    // Runs on a player lane
+    private void processPlayer(Achievable achievable, AchievablePlayer player, AchievableTrigger trigger) {
+        if (achievable.processPlayer(player, trigger)) {
+            // this player's handlers changed shared state, so everyone else needs another look, after what's already queued
+            submit(sharedLane, () -> {
+                List<List<Runnable>> work = newLaneWork();
+                addReevaluation(work, achievable);
+                submitLaneWork(work);
+            });
+        }
+    }
+
+    private void addReevaluation(List<List<Runnable>> work, Achievable achievable) {
+        for (AchievablePlayer player : achievable.getApplicablePlayers()) {
+            work.get(laneOf(player)).add(() -> achievable.reevaluatePlayer(player));
+        }
+    }
+
+    private List<List<Runnable>> newLaneWork() {
+        List<List<Runnable>> work = new ArrayList<>(playerLanes.length);
+        for (int lane = 0; lane < playerLanes.length; lane++) {
+            work.add(new ArrayList<>());
+        }
+        return work;
+    }
+
+    // One task per lane, so a trigger for everyone online doesn't become a task per player
+    private void submitLaneWork(List<List<Runnable>> work) {
+        for (int lane = 0; lane < playerLanes.length; lane++) {
+            List<Runnable> tasks = work.get(lane);
+            if (!tasks.isEmpty()) {
+                submit(playerLanes[lane], () -> {
+                    for (Runnable task : tasks) {
+                        try {
+                            task.run();
+                        } catch (Exception ex) {
+                            Achievables.getInstance().getLogger().log(Level.SEVERE, "Error processing trigger", ex);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private int laneOf(AchievablePlayer player) {
+        int hash = player.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), playerLanes.length);
+    }
+
+    private void submit(ExecutorService lane, Runnable task) {
+        pending.incrementAndGet();
+        try {
+            lane.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception ex) {
+                    Achievables.getInstance().getLogger().log(Level.SEVERE, "Error processing trigger", ex);
+                } finally {
+                    finished();
+                }
+            });
+        } catch (RuntimeException e) {
+            finished();
+            throw e;
+        }
+    }
+
+    private void finished() {
+        if (pending.decrementAndGet() == 0) {
+            synchronized (idleMonitor) {
+                idleMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits until every trigger submitted so far, and all the work it caused, has been processed.
+     *
+     * @return false if that didn't happen within the timeout
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (idleMonitor) {
+            while (pending.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(idleMonitor, remaining);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        try {
+            awaitIdle(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sharedLane.shutdown();
+        for (ExecutorService lane : playerLanes) {
+            lane.shutdown();
+        }
+    }
+}
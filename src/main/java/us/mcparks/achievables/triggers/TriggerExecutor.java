@@ -0,0 +1,30 @@
+package us.mcparks.achievables.triggers;
+
+import us.mcparks.achievables.framework.Achievable;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Decides where and when the achievables a trigger was routed to process it.
+ *
+ * {@link us.mcparks.achievables.AchievableManager#processTrigger} hands every trigger to the executor returned by
+ * {@link us.mcparks.achievables.Achievables#getTriggerExecutor()}, which by default processes it right away on the
+ * calling thread ({@link DirectTriggerExecutor}).
+ */
+public interface TriggerExecutor extends AutoCloseable {
+
+    void execute(AchievableTrigger trigger, Collection<Achievable> achievables);
+
+    // Processes a batch of triggers of the same type, in order
+    default void execute(List<AchievableTrigger> triggers, Collection<Achievable> achievables) {
+        for (AchievableTrigger trigger : triggers) {
+            execute(trigger, achievables);
+        }
+    }
+
+    // Stops accepting triggers, letting the ones already submitted finish
+    @Override
+    default void close() {
+    }
+}
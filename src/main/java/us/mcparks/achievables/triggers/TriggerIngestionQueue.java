@@ -0,0 +1,312 @@
+package us.mcparks.achievables.triggers;
+
+import us.mcparks.achievables.AchievableManager;
+import us.mcparks.achievables.Achievables;
+import us.mcparks.achievables.events.IdempotentEvent;
+import us.mcparks.achievables.framework.AchievablePlayer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Accepts triggers from any thread and returns right away; a background thread drains them in batches and routes them
+ * to the achievables, which process them on the manager's {@link TriggerExecutor}.
+ *
+ * The queue is bounded, and what happens to a trigger when it's full is up to the {@link BackpressurePolicy}. Each
+ * drained batch is split into groups of the same {@link AchievableTrigger.Type}, so an achievable handles a burst of
+ * the same event (like a fireworks show) in one pass. By default only consecutive triggers of a type are grouped, which
+ * keeps the order between different types; {@link Builder#groupAcrossTypes} groups the whole batch by type instead, for
+ * achievables that don't care about the order of different events. Runs of equal {@link IdempotentEvent}s for the same
+ * player can optionally be collapsed into one.
+ */
+public class TriggerIngestionQueue implements AutoCloseable {
+    public enum BackpressurePolicy {
+        // wait for room in the queue
+        BLOCK,
+        // drop the trigger being submitted
+        DROP_NEWEST,
+        // drop the oldest queued trigger to make room
+        DROP_OLDEST,
+        // process the trigger right away on the submitting thread, ahead of what's still queued
+        CALLER_RUNS
+    }
+
+    // how long the drain thread waits for a trigger before checking whether the queue was closed
+    private static final long POLL_MILLIS = 50;
+
+    private final BlockingQueue<AchievableTrigger> queue;
+    private final BackpressurePolicy backpressurePolicy;
+    private final int maxBatchSize;
+    private final boolean coalesceIdempotentEvents;
+    private final boolean groupAcrossTypes;
+    private final Thread drainThread;
+    private volatile boolean closed;
+    // submits that got past the closed check and may still be adding to the queue
+    private final AtomicInteger submitting = new AtomicInteger();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private TriggerIngestionQueue(Builder builder) {
+        this.queue = new ArrayBlockingQueue<>(builder.capacity);
+        this.backpressurePolicy = builder.backpressurePolicy;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.coalesceIdempotentEvents = builder.coalesceIdempotentEvents;
+        this.groupAcrossTypes = builder.groupAcrossTypes;
+        this.drainThread = new Thread(this::drain, "achievables-ingest");
+        this.drainThread.setDaemon(true);
+        this.drainThread.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Queues the trigger for processing.
+     *
+     * @return false if it was dropped (because the queue was full under {@link BackpressurePolicy#DROP_NEWEST}, or it's closed)
+     */
+    public boolean submit(AchievableTrigger trigger) {
+        Objects.requireNonNull(trigger, "trigger");
+        submitting.incrementAndGet();
+        try {
+            // checked after counting this submit, so the drain thread waits for it if it gets through
+            if (closed) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            submitted.incrementAndGet();
+            if (queue.offer(trigger)) {
+                return true;
+            }
+            if (backpressurePolicy != BackpressurePolicy.CALLER_RUNS) {
+                return enqueueWhenFull(trigger);
+            }
+        } finally {
+            submitting.decrementAndGet();
+        }
+        // outside the count, so a close doesn't wait for it
+        manager().processTrigger(trigger);
+        return true;
+    }
+
+    private boolean enqueueWhenFull(AchievableTrigger trigger) {
+        switch (backpressurePolicy) {
+            case BLOCK:
+                try {
+                    queue.put(trigger);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                    return false;
+                }
+            case DROP_OLDEST:
+                while (!queue.offer(trigger)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+                return true;
+            default:
+                dropped.incrementAndGet();
+                return false;
+        }
+    }
+
+    private void drain() {
+        List<AchievableTrigger> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            AchievableTrigger first;
+            try {
+                first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                first = null;
+            }
+            if (first == null) {
+                // once closed, everything queued before the last submit finished is dispatched before stopping
+                if (closed && submitting.get() == 0 && queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, maxBatchSize - 1);
+
+            try {
+                dispatch(batch);
+            } catch (Exception ex) {
+                Achievables.getInstance().getLogger().log(Level.SEVERE, "Error dispatching " + batch.size() + " queued triggers", ex);
+            }
+            batch.clear();
+        }
+    }
+
+    private void dispatch(List<AchievableTrigger> batch) {
+        if (coalesceIdempotentEvents) {
+            batch = coalesce(batch);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        batches.incrementAndGet();
+
+        AchievableManager manager = manager();
+        TriggerRouter router = manager.getTriggerRouter();
+        TriggerExecutor executor = manager.getTriggerExecutor();
+        for (List<AchievableTrigger> group : group(batch)) {
+            router.route(group, executor);
+        }
+    }
+
+    private List<List<AchievableTrigger>> group(List<AchievableTrigger> batch) {
+        if (groupAcrossTypes) {
+            Map<AchievableTrigger.Type, List<AchievableTrigger>> byType = new LinkedHashMap<>();
+            for (AchievableTrigger trigger : batch) {
+                byType.computeIfAbsent(trigger.getType(), type -> new ArrayList<>()).add(trigger);
+            }
+            return new ArrayList<>(byType.values());
+        }
+
+        List<List<AchievableTrigger>> runs = new ArrayList<>();
+        List<AchievableTrigger> run = null;
+        for (AchievableTrigger trigger : batch) {
+            if (run == null || !run.get(0).getType().equals(trigger.getType())) {
+                run = new ArrayList<>();
+                runs.add(run);
+            }
+            run.add(trigger);
+        }
+        return runs;
+    }
+
+    // Drops idempotent events that repeat the previous trigger queued for the same player
+    private List<AchievableTrigger> coalesce(List<AchievableTrigger> batch) {
+        Map<AchievablePlayer, Object> previous = new HashMap<>();
+        List<AchievableTrigger> kept = new ArrayList<>(batch.size());
+        for (AchievableTrigger trigger : batch) {
+            AchievablePlayer player = trigger.getTargetPlayer();
+            if (player == null) {
+                // it reaches every player, so it's in between for all of them
+                previous.clear();
+                kept.add(trigger);
+                continue;
+            }
+            Object key = coalescingKey(trigger);
+            if (key != null && key.equals(previous.get(player))) {
+                coalesced.incrementAndGet();
+                continue;
+            }
+            // a non-idempotent trigger in between means the next duplicate has to be processed again
+            previous.put(player, key);
+            kept.add(trigger);
+        }
+        return kept;
+    }
+
+    private static Object coalescingKey(AchievableTrigger trigger) {
+        if (trigger instanceof EventAchievableTrigger && ((EventAchievableTrigger) trigger).getEvent() instanceof IdempotentEvent) {
+            IdempotentEvent event = (IdempotentEvent) ((EventAchievableTrigger) trigger).getEvent();
+            return Arrays.asList(trigger.getType(), event.getCoalescingKey());
+        }
+        return null;
+    }
+
+    private static AchievableManager manager() {
+        return Achievables.getInstance().getAchievableManager();
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * Stops accepting triggers and waits (up to the timeout) for the ones already queued to be dispatched.
+     *
+     * @return false if they weren't all dispatched in time
+     */
+    public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+        closed = true;
+        drainThread.join(unit.toMillis(timeout));
+        return !drainThread.isAlive();
+    }
+
+    @Override
+    public void close() {
+        try {
+            close(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static class Builder {
+        int capacity = 65536;
+        BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+        int maxBatchSize = 1024;
+        boolean coalesceIdempotentEvents = false;
+        boolean groupAcrossTypes = false;
+
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder backpressurePolicy(BackpressurePolicy backpressurePolicy) {
+            this.backpressurePolicy = backpressurePolicy;
+            return this;
+        }
+
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        public Builder coalesceIdempotentEvents(boolean coalesceIdempotentEvents) {
+            this.coalesceIdempotentEvents = coalesceIdempotentEvents;
+            return this;
+        }
+
+        public Builder groupAcrossTypes(boolean groupAcrossTypes) {
+            this.groupAcrossTypes = groupAcrossTypes;
+            return this;
+        }
+
+        public TriggerIngestionQueue build() {
+            if (capacity < 1 || maxBatchSize < 1) {
+                throw new IllegalArgumentException("capacity and maxBatchSize must be positive");
+            }
+            return new TriggerIngestionQueue(this);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package us.mcparks.achievables.triggers;
+
+import com.google.common.collect.ImmutableSet;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The values of one event property that an achievable listens for, for one trigger type: the {@link TriggerRouter} only
+ * hands it events of that type whose property has one of them. Values are {@link EventPredicate#normalize normalized}.
+ */
+@Getter
+@AllArgsConstructor
+public final class TriggerKey {
+    private final String property;
+    private final ImmutableSet<Object> values;
+}
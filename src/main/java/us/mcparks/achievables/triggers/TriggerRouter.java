@@ -0,0 +1,199 @@
+package us.mcparks.achievables.triggers;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
+import us.mcparks.achievables.events.Event;
+import us.mcparks.achievables.framework.Achievable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Indexes registered achievables by the {@link AchievableTrigger.Type}s they report from {@link Achievable#getTriggers()},
+ * so a trigger is only handed to the achievables that actually listen for it.
+ *
+ * Reads never lock: every registration change builds a new immutable snapshot and swaps it in, so a trigger that is
+ * being routed while achievables are (un)registered sees either the old or the new set, never a mix.
+ *
+ * Achievables that only listen for some values of an event property ({@link Achievable#getTriggerKey}) are also indexed
+ * by those values, so an event is only routed to the ones listening for the values it has.
+ */
+public class TriggerRouter {
+    private final Object writeLock = new Object();
+    private volatile Snapshot snapshot = new Snapshot(ImmutableMap.of());
+
+    public void register(Achievable achievable) {
+        update(Collections.emptyList(), Collections.singleton(achievable));
+    }
+
+    public void registerAll(Collection<? extends Achievable> achievables) {
+        update(Collections.emptyList(), achievables);
+    }
+
+    public void unregister(Achievable achievable) {
+        update(Collections.singleton(achievable), Collections.emptyList());
+    }
+
+    public void unregisterAll(Collection<? extends Achievable> achievables) {
+        update(achievables, Collections.emptyList());
+    }
+
+    /**
+     * Removes and adds achievables in a single atomic step. Achievables are keyed by {@link Achievable#getUUID()}, so adding
+     * an achievable with the UUID of one that is already registered replaces it.
+     */
+    public void update(Collection<? extends Achievable> removed, Collection<? extends Achievable> added) {
+        synchronized (writeLock) {
+            Map<UUID, Achievable> achievables = new LinkedHashMap<>(snapshot.byUuid);
+            for (Achievable achievable : removed) {
+                achievables.remove(achievable.getUUID());
+            }
+            for (Achievable achievable : added) {
+                achievables.put(achievable.getUUID(), achievable);
+            }
+            snapshot = new Snapshot(ImmutableMap.copyOf(achievables));
+        }
+    }
+
+    public void clear() {
+        synchronized (writeLock) {
+            snapshot = new Snapshot(ImmutableMap.of());
+        }
+    }
+
+    // Every achievable listening for the type, or for one of its supertypes
+    public Collection<Achievable> getAchievables(AchievableTrigger.Type type) {
+        return snapshot.byType.get(type);
+    }
+
+    public Collection<Achievable> getAchievables() {
+        return snapshot.byUuid.values();
+    }
+
+    // The achievables listening for the trigger, leaving out those that only listen for other values of its event's properties
+    public Collection<Achievable> getAchievables(AchievableTrigger trigger) {
+        return snapshot.select(trigger);
+    }
+
+    public Achievable getAchievable(UUID uuid) {
+        return snapshot.byUuid.get(uuid);
+    }
+
+    public boolean isRegistered(Achievable achievable) {
+        return snapshot.byUuid.containsKey(achievable.getUUID());
+    }
+
+    // Hands the trigger to every achievable listening for its type, to process on the given executor (or right away)
+    public void route(AchievableTrigger trigger) {
+        route(trigger, DirectTriggerExecutor.INSTANCE);
+    }
+
+    public void route(AchievableTrigger trigger, TriggerExecutor executor) {
+        Collection<Achievable> achievables = getAchievables(trigger);
+        if (!achievables.isEmpty()) {
+            executor.execute(trigger, achievables);
+        }
+    }
+
+    // Hands a batch of triggers of the same type to every achievable listening for that type
+    public void route(List<AchievableTrigger> triggers, TriggerExecutor executor) {
+        if (triggers.isEmpty()) {
+            return;
+        }
+        Collection<Achievable> achievables = snapshot.select(triggers);
+        if (!achievables.isEmpty()) {
+            executor.execute(triggers, achievables);
+        }
+    }
+
+    private static class Snapshot {
+        final ImmutableMap<UUID, Achievable> byUuid;
+        final TriggerTypeIndex<Achievable> byType;
+        // the achievables that listen for every trigger of a type, and those that only listen for some property values
+        final TriggerTypeIndex<Achievable> unkeyed;
+        final TriggerTypeIndex<KeyedAchievables> keyed;
+
+        Snapshot(ImmutableMap<UUID, Achievable> byUuid) {
+            this.byUuid = byUuid;
+            ImmutableSetMultimap.Builder<AchievableTrigger.Type, Achievable> builder = ImmutableSetMultimap.builder();
+            ImmutableSetMultimap.Builder<AchievableTrigger.Type, Achievable> unkeyed = ImmutableSetMultimap.builder();
+            Map<AchievableTrigger.Type, Map<String, ImmutableSetMultimap.Builder<Object, Achievable>>> keyed = new LinkedHashMap<>();
+            for (Achievable achievable : byUuid.values()) {
+                for (AchievableTrigger.Type type : achievable.getTriggers()) {
+                    builder.put(type, achievable);
+                    TriggerKey key = achievable.getTriggerKey(type);
+                    if (key == null) {
+                        unkeyed.put(type, achievable);
+                    } else {
+                        ImmutableSetMultimap.Builder<Object, Achievable> byValue = keyed
+                                .computeIfAbsent(type, t -> new LinkedHashMap<>())
+                                .computeIfAbsent(key.getProperty(), property -> ImmutableSetMultimap.builder());
+                        for (Object value : key.getValues()) {
+                            byValue.put(value, achievable);
+                        }
+                    }
+                }
+            }
+            this.byType = new TriggerTypeIndex<>(builder.build());
+            this.unkeyed = new TriggerTypeIndex<>(unkeyed.build());
+            ImmutableListMultimap.Builder<AchievableTrigger.Type, KeyedAchievables> indexes = ImmutableListMultimap.builder();
+            keyed.forEach((type, byProperty) -> byProperty.forEach((property, byValue) -> indexes.put(type, new KeyedAchievables(property, byValue.build()))));
+            this.keyed = new TriggerTypeIndex<>(indexes.build());
+        }
+
+        Collection<Achievable> select(AchievableTrigger trigger) {
+            List<KeyedAchievables> keyed = this.keyed.get(trigger.getType());
+            Event event = eventOf(trigger);
+            if (keyed.isEmpty() || event == null) {
+                return byType.get(trigger.getType());
+            }
+            List<Achievable> unkeyed = this.unkeyed.get(trigger.getType());
+            if (unkeyed.isEmpty() && keyed.size() == 1) {
+                return keyed.get(0).select(event);
+            }
+            Set<Achievable> selected = new LinkedHashSet<>(unkeyed);
+            for (KeyedAchievables index : keyed) {
+                selected.addAll(index.select(event));
+            }
+            return selected;
+        }
+
+        // Every achievable that one of the triggers (all of the same type) gets routed to
+        Collection<Achievable> select(List<AchievableTrigger> triggers) {
+            if (triggers.size() == 1 || keyed.get(triggers.get(0).getType()).isEmpty()) {
+                return select(triggers.get(0));
+            }
+            Set<Achievable> selected = new LinkedHashSet<>();
+            for (AchievableTrigger trigger : triggers) {
+                selected.addAll(select(trigger));
+            }
+            return selected;
+        }
+
+        private static Event eventOf(AchievableTrigger trigger) {
+            return trigger instanceof EventAchievableTrigger ? ((EventAchievableTrigger) trigger).getEvent() : null;
+        }
+    }
+
+    // The achievables of one trigger type that only listen for some values of a property, by value
+    private static class KeyedAchievables {
+        final String property;
+        final ImmutableSetMultimap<Object, Achievable> byValue;
+
+        KeyedAchievables(String property, ImmutableSetMultimap<Object, Achievable> byValue) {
+            this.property = property;
+            this.byValue = byValue;
+        }
+
+        Collection<Achievable> select(Event event) {
+            return byValue.get(EventPredicate.normalize(EventPredicate.property(event, property)));
+        }
+    }
+}
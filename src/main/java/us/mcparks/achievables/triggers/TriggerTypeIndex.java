@@ -0,0 +1,56 @@
+package us.mcparks.achievables.triggers;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Multimap;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Values indexed by the trigger type they were declared for, looked up by the type of an incoming trigger.
+ *
+ * A lookup matches values declared for the trigger's type or any type in its {@link AchievableTrigger.Type#getHierarchy()}.
+ * The result for each trigger type is worked out once and cached, so after the first trigger of a type every lookup is a
+ * single hash table hit.
+ */
+public final class TriggerTypeIndex<V> {
+    private final ImmutableListMultimap<AchievableTrigger.Type, V> byDeclaredType;
+    private final ConcurrentMap<AchievableTrigger.Type, List<V>> byTriggerType = new ConcurrentHashMap<>();
+
+    public TriggerTypeIndex(Multimap<AchievableTrigger.Type, ? extends V> byDeclaredType) {
+        this.byDeclaredType = ImmutableListMultimap.copyOf(byDeclaredType);
+    }
+
+    public List<V> get(AchievableTrigger.Type triggerType) {
+        List<V> values = byTriggerType.get(triggerType);
+        return values != null ? values : byTriggerType.computeIfAbsent(triggerType, this::resolve);
+    }
+
+    public boolean matches(AchievableTrigger.Type triggerType) {
+        return !get(triggerType).isEmpty();
+    }
+
+    public Set<AchievableTrigger.Type> getDeclaredTypes() {
+        return byDeclaredType.keySet();
+    }
+
+    public ImmutableListMultimap<AchievableTrigger.Type, V> asMultimap() {
+        return byDeclaredType;
+    }
+
+    private List<V> resolve(AchievableTrigger.Type triggerType) {
+        List<AchievableTrigger.Type> hierarchy = triggerType.getHierarchy();
+        if (hierarchy.size() == 1) {
+            return byDeclaredType.get(triggerType);
+        }
+        Set<V> values = new LinkedHashSet<>();
+        for (AchievableTrigger.Type type : hierarchy) {
+            values.addAll(byDeclaredType.get(type));
+        }
+        return ImmutableList.copyOf(values);
+    }
+}
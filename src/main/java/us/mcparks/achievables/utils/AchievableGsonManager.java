@@ -28,7 +28,7 @@ public class AchievableGsonManager {
                                 () -> Sets.newHashSet());
                         for (Map.Entry<String, JsonElement> entry : ((JsonObject) jsonElement).entrySet()) {
                             for (JsonElement element : (JsonArray) entry.getValue()) {
-                                map.get(new AchievableTrigger.Type(entry.getKey()))
+                                map.get(AchievableTrigger.Type.of(entry.getKey()))
                                         .add(element.getAsString());
                             }
                         }
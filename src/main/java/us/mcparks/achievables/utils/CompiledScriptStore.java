@@ -0,0 +1,209 @@
+package us.mcparks.achievables.utils;
+
+import com.google.common.hash.Hashing;
+import groovy.lang.GroovySystem;
+import groovy.lang.Script;
+import us.mcparks.achievables.Achievables;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the classes compiled from scripts on disk, one file per script, so that after a restart they're loaded as they
+ * are instead of being compiled again.
+ *
+ * A file is named by the SHA-256 of the script's source together with everything else its bytecode depends on: the
+ * fingerprint of the compiler setup it was given (imports, customizers, ...), the Groovy version, and this library's
+ * version (or, without one, the size and modification time of its jar). A change to any of them just misses the old
+ * files, which {@link #deleteUnused()} cleans up. A file that can't be read is deleted and the script compiled again.
+ */
+public class CompiledScriptStore {
+    private static final int MAGIC = 0x41435343; // "ACSC"
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".classes";
+
+    private final Path directory;
+    private final String fingerprint;
+    // files loaded or saved by this store, which deleteUnused keeps
+    private final Set<Path> used = ConcurrentHashMap.newKeySet();
+
+    public CompiledScriptStore(Path directory, String fingerprint) throws IOException {
+        this.directory = directory;
+        this.fingerprint = fingerprint + ";groovy=" + GroovySystem.getVersion() + ";library=" + libraryStamp();
+        Files.createDirectories(directory);
+    }
+
+    // null if nothing was stored for the script, or what was can't be read
+    CompiledScript load(String expression) {
+        Path file = fileOf(expression);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a compiled script file");
+            }
+            String mainClass = in.readUTF();
+            int count = in.readInt();
+            Map<String, byte[]> classes = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                classes.put(name, bytes);
+            }
+            used.add(file);
+            return new CompiledScript(mainClass, classes);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            logger().log(Level.WARNING, "Ignoring unreadable compiled script " + file, e);
+            delete(expression);
+            return null;
+        }
+    }
+
+    void save(String expression, CompiledScript script) {
+        Path file = fileOf(expression);
+        try {
+            Path temp = Files.createTempFile(directory, "compiling", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(script.mainClass);
+                out.writeInt(script.classes.size());
+                for (Map.Entry<String, byte[]> entry : script.classes.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    out.write(entry.getValue());
+                }
+            }
+            // readers only ever see a whole file
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            used.add(file);
+        } catch (IOException e) {
+            logger().log(Level.WARNING, "Failed to store compiled script " + file, e);
+        }
+    }
+
+    void delete(String expression) {
+        Path file = fileOf(expression);
+        used.remove(file);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger().log(Level.WARNING, "Failed to delete compiled script " + file, e);
+        }
+    }
+
+    /**
+     * Deletes every stored script this store hasn't loaded or saved, e.g. ones compiled by an older version or for
+     * achievement files that are gone. Call it once everything has been loaded, and only if no other process shares
+     * the directory.
+     */
+    public int deleteUnused() throws IOException {
+        int deleted = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if ((name.endsWith(SUFFIX) && !used.contains(file)) || name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private Path fileOf(String expression) {
+        String key = Hashing.sha256().newHasher()
+                .putString(fingerprint, StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(expression, StandardCharsets.UTF_8)
+                .hash().toString();
+        return directory.resolve(key + SUFFIX);
+    }
+
+    // Changes whenever this library does
+    private static String libraryStamp() {
+        String version = CompiledScriptStore.class.getPackage().getImplementationVersion();
+        CodeSource source = CompiledScriptStore.class.getProtectionDomain().getCodeSource();
+        if (source == null) {
+            return String.valueOf(version);
+        }
+        try {
+            Path location = Paths.get(source.getLocation().toURI());
+            if (!Files.isDirectory(location)) {
+                return version + "@" + Files.size(location) + ":" + Files.getLastModifiedTime(location).toMillis();
+            }
+            // classes straight from a build directory, e.g. while developing
+            long newest = 0;
+            long count = 0;
+            try (Stream<Path> files = Files.walk(location)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    newest = Math.max(newest, Files.getLastModifiedTime(file).toMillis());
+                    count++;
+                }
+            }
+            return version + "@" + count + ":" + newest;
+        } catch (Exception e) {
+            logger().log(Level.WARNING, "Can't tell which build of the library this is; compiled scripts won't be reused after it changes", e);
+            return String.valueOf(version);
+        }
+    }
+
+    private static Logger logger() {
+        Achievables achievables = Achievables.getInstance();
+        return achievables != null ? achievables.getLogger() : Logger.getGlobal();
+    }
+
+    // The classes compiled from one script: the script class itself, and the classes of its closures
+    static final class CompiledScript {
+        final String mainClass;
+        final Map<String, byte[]> classes;
+
+        CompiledScript(String mainClass, Map<String, byte[]> classes) {
+            this.mainClass = mainClass;
+            this.classes = Collections.unmodifiableMap(classes);
+        }
+
+        // Each script gets a loader of its own, which is collected along with its classes once the script isn't used
+        @SuppressWarnings("unchecked")
+        Class<? extends Script> define(ClassLoader parent) throws ClassNotFoundException {
+            return (Class<? extends Script>) new ScriptClassLoader(parent, classes).loadClass(mainClass);
+        }
+    }
+
+    private static final class ScriptClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        ScriptClassLoader(ClassLoader parent, Map<String, byte[]> classes) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            byte[] bytes = classes.get(name);
+            if (bytes == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package us.mcparks.achievables.utils;
 import groovy.lang.Binding;
 import groovy.lang.Script;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -11,7 +12,8 @@ public class GroovyEvaluator
     private static GroovyScriptCachingBuilder groovyScriptCachingBuilder = new GroovyScriptCachingBuilder();
 
     private GroovyScriptCachingBuilder overrideGroovyScriptCachingBuilder = null;
-    private Map<String, Object> variables = new HashMap<>();
+    // copy-on-write, so evaluations can read it without locking while variables are being set
+    private volatile Map<String, Object> variables = Collections.emptyMap();
 
     public GroovyEvaluator() {
         this(new HashMap<>());
@@ -24,24 +26,28 @@ public class GroovyEvaluator
 
     public GroovyEvaluator(final Map<String, Object> contextVariables)
     {
-        variables.putAll(contextVariables);
+        setVariables(contextVariables);
     }
 
-    private GroovyScriptCachingBuilder getGroovyScriptCachingBuilder() {
+    public GroovyScriptCachingBuilder getGroovyScriptCachingBuilder() {
         if (overrideGroovyScriptCachingBuilder != null) {
             return overrideGroovyScriptCachingBuilder;
         }
         return groovyScriptCachingBuilder;
     }
 
-    public void setVariables(final Map<String, Object> answers)
+    public synchronized void setVariables(final Map<String, Object> answers)
     {
-        variables.putAll(answers);
+        Map<String, Object> copy = new HashMap<>(variables);
+        copy.putAll(answers);
+        variables = Collections.unmodifiableMap(copy);
     }
 
-    public void setVariable(final String name, final Object value)
+    public synchronized void setVariable(final String name, final Object value)
     {
-        variables.put(name, value);
+        Map<String, Object> copy = new HashMap<>(variables);
+        copy.put(name, value);
+        variables = Collections.unmodifiableMap(copy);
     }
 
     public Object getVariable(final String name)
@@ -49,23 +55,54 @@ public class GroovyEvaluator
         return variables.get(name);
     }
 
-    public void removeVariable(final String name)
+    public synchronized void removeVariable(final String name)
     {
-        variables.remove(name);
+        Map<String, Object> copy = new HashMap<>(variables);
+        copy.remove(name);
+        variables = Collections.unmodifiableMap(copy);
     }
 
     public Object evaluateExpression(String expression)
     {
-        final Binding binding = new Binding();
-        for (Map.Entry<String, Object> varEntry : variables.entrySet())
+        return evaluateExpression(expression, new HashMap<>());
+    }
+
+    /**
+     * Evaluates the expression in a script instance of its own, so any number of threads can evaluate the same
+     * expression at once. The script sees the given variables on top of this evaluator's, and anything it assigns
+     * goes into the given map rather than the evaluator's.
+     */
+    public Object evaluateExpression(String expression, Map<String, Object> localVariables)
+    {
+        Script script = getGroovyScriptCachingBuilder().newScript(expression, new EvaluationBinding(variables, localVariables));
+        return script.run();
+    }
+
+    // Reads fall through to the evaluator's variables; writes go to the evaluation's own map
+    private static final class EvaluationBinding extends Binding
+    {
+        private final Map<String, Object> evaluatorVariables;
+
+        EvaluationBinding(Map<String, Object> evaluatorVariables, Map<String, Object> locals)
         {
-            binding.setProperty(varEntry.getKey(), varEntry.getValue());
+            super(locals);
+            this.evaluatorVariables = evaluatorVariables;
         }
-        Script script = getGroovyScriptCachingBuilder().getScript(expression);
-        synchronized (script)
+
+        @Override
+        public Object getVariable(String name)
+        {
+            if (!getVariables().containsKey(name) && evaluatorVariables.containsKey(name))
+            {
+                return evaluatorVariables.get(name);
+            }
+            return super.getVariable(name);
+        }
+
+        @Override
+        public boolean hasVariable(String name)
         {
-            script.setBinding(binding);
-            return script.run();
+            return super.hasVariable(name) || evaluatorVariables.containsKey(name);
         }
     }
 
@@ -1,35 +1,335 @@
 package us.mcparks.achievables.utils;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyCodeSource;
 import groovy.lang.GroovyShell;
+import groovy.lang.GroovySystem;
 import groovy.lang.Script;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.codehaus.groovy.tools.GroovyClass;
+import us.mcparks.achievables.Achievables;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Compiles scripts and caches them by the SHA-256 of their source.
+ *
+ * The cache is bounded by the total length of the cached sources. Scripts are compiled into class loaders that are
+ * shared by a "generation" of scripts; once a generation is full (or {@link #newGeneration()} is called, e.g. on a
+ * reload) a new one is started, and an old generation's loader is let go as soon as all of its scripts have been
+ * evicted or invalidated, so their classes can be unloaded.
+ *
+ * With a {@link CompiledScriptStore}, compiled classes are also kept on disk, and a script that's already there is
+ * loaded from it without compiling; each of those scripts gets a class loader of its own instead.
+ */
 public class GroovyScriptCachingBuilder {
-    private GroovyShell shell;
-    private Map<String, Script> scripts = new HashMap<>();
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 4_000_000;
+    public static final int DEFAULT_SCRIPTS_PER_GENERATION = 256;
+
+    private final GroovyShell shell;
+    private final CompilerConfiguration configuration;
+    private final ClassLoader parent;
+    private final int scriptsPerGeneration;
+    private final Cache<String, CachedScript> scripts;
+    private final Object generationLock = new Object();
+    private Generation generation;
+    private volatile CompiledScriptStore store;
+    // only resolves the classes scripts refer to while they're compiled for the store
+    private GroovyClassLoader compilerLoader;
 
     public GroovyScriptCachingBuilder() {
-        this.shell = new GroovyShell(this.getClass().getClassLoader());
+        this(CompilerConfiguration.DEFAULT);
+    }
+
+    public GroovyScriptCachingBuilder(CompilerConfiguration configuration) {
+        this(configuration, GroovyScriptCachingBuilder.class.getClassLoader(), DEFAULT_MAXIMUM_WEIGHT, DEFAULT_SCRIPTS_PER_GENERATION);
+    }
+
+    public GroovyScriptCachingBuilder(CompilerConfiguration configuration, ClassLoader parent, long maximumWeight, int scriptsPerGeneration) {
+        this(null, configuration, parent, maximumWeight, scriptsPerGeneration);
     }
 
+    // Scripts are compiled by the given shell's class loader, which keeps them loaded for as long as the shell lives
     public GroovyScriptCachingBuilder(GroovyShell shell) {
+        this(shell, null, null, DEFAULT_MAXIMUM_WEIGHT, Integer.MAX_VALUE);
+    }
+
+    private GroovyScriptCachingBuilder(GroovyShell shell, CompilerConfiguration configuration, ClassLoader parent, long maximumWeight, int scriptsPerGeneration) {
         this.shell = shell;
+        this.configuration = configuration;
+        this.parent = parent;
+        this.scriptsPerGeneration = scriptsPerGeneration;
+        this.scripts = CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((String hash, CachedScript script) -> script.weight)
+                .removalListener(this::onRemoval)
+                .recordStats()
+                .build();
     }
 
     public Script getScript(final String expression) {
-        Script script;
-        if (scripts.containsKey(expression))
-        {
-            script = scripts.get(expression);
+        return getCachedScript(expression).getScript();
+    }
+
+    // A new instance of the expression's script, for callers that can't share one
+    public Script newScript(final String expression, Binding binding) {
+        return getCachedScript(expression).newInstance(binding);
+    }
+
+    public Class<? extends Script> getScriptClass(final String expression) {
+        return getCachedScript(expression).scriptClass;
+    }
+
+    private CachedScript getCachedScript(String expression) {
+        try {
+            return scripts.get(hash(expression), () -> compile(expression));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            // let compilation errors through as they are
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException("Failed to compile script", e.getCause());
+        }
+    }
+
+    public void invalidate(String expression) {
+        scripts.invalidate(hash(expression));
+    }
+
+    // Forgets a script that won't be compiled again, in memory and in the store
+    public void discard(String expression) {
+        invalidate(expression);
+        CompiledScriptStore store = this.store;
+        if (store != null) {
+            store.delete(expression);
+        }
+    }
+
+    public void invalidateAll() {
+        scripts.invalidateAll();
+        newGeneration();
+    }
+
+    // Compiles scripts from now on into a fresh class loader, so the current one can be released once its scripts are gone
+    public void newGeneration() {
+        synchronized (generationLock) {
+            if (generation != null) {
+                generation.retire();
+                generation = null;
+            }
+        }
+    }
+
+    public void setStore(CompiledScriptStore store) {
+        if (store != null && shell != null) {
+            throw new IllegalStateException("Scripts compiled by a shell can't be stored");
+        }
+        this.store = store;
+    }
+
+    public CompiledScriptStore getStore() {
+        return store;
+    }
+
+    public CacheStats getStats() {
+        return scripts.stats();
+    }
+
+    public long size() {
+        return scripts.size();
+    }
+
+    private static String hash(String expression) {
+        return Hashing.sha256().hashString(expression, StandardCharsets.UTF_8).toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private CachedScript compile(String expression) {
+        if (shell != null) {
+            Script script = shell.parse(expression);
+            return new CachedScript(script.getClass(), null, expression.length());
+        }
+        CompiledScriptStore store = this.store;
+        if (store != null) {
+            return compile(expression, store);
+        }
+
+        Generation target;
+        synchronized (generationLock) {
+            if (generation == null || generation.compiled >= scriptsPerGeneration) {
+                if (generation != null) {
+                    generation.retire();
+                }
+                generation = new Generation(new GroovyClassLoader(parent, configuration));
+            }
+            target = generation;
+            target.compiled++;
+            target.live.incrementAndGet();
+        }
+        try {
+            String name = scriptName(expression) + ".groovy";
+            Class<? extends Script> scriptClass = (Class<? extends Script>) target.loader.parseClass(new GroovyCodeSource(expression, name, GroovyShell.DEFAULT_CODE_BASE), false);
+            return new CachedScript(scriptClass, target, expression.length());
+        } catch (RuntimeException | Error e) {
+            target.release();
+            throw e;
+        }
+    }
+
+    private CachedScript compile(String expression, CompiledScriptStore store) {
+        CompiledScriptStore.CompiledScript compiled = store.load(expression);
+        if (compiled != null) {
+            try {
+                return new CachedScript(compiled.define(parent), null, expression.length());
+            } catch (ClassNotFoundException | LinkageError e) {
+                store.delete(expression);
+            }
+        }
+        compiled = compileClasses(expression);
+        store.save(expression, compiled);
+        try {
+            return new CachedScript(compiled.define(parent), null, expression.length());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Compiled script is missing its class", e);
+        }
+    }
+
+    // Compiles the script to bytecode without loading it
+    private CompiledScriptStore.CompiledScript compileClasses(String expression) {
+        GroovyClassLoader loader;
+        synchronized (generationLock) {
+            if (compilerLoader == null) {
+                compilerLoader = new GroovyClassLoader(parent, configuration);
+            }
+            loader = compilerLoader;
+        }
+        String mainClass = scriptName(expression);
+        CompilationUnit unit = new CompilationUnit(configuration, null, loader);
+        unit.addSource(mainClass + ".groovy", expression);
+        unit.compile(Phases.CLASS_GENERATION);
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (GroovyClass compiled : unit.getClasses()) {
+            classes.put(compiled.getName(), compiled.getBytes());
+        }
+        return new CompiledScriptStore.CompiledScript(mainClass, classes);
+    }
+
+    private static String scriptName(String expression) {
+        return "Script_" + hash(expression).substring(0, 16);
+    }
+
+    private void onRemoval(RemovalNotification<String, CachedScript> notification) {
+        CachedScript script = notification.getValue();
+        if (script != null) {
+            GroovySystem.getMetaClassRegistry().removeMetaClass(script.scriptClass);
+            if (script.generation != null) {
+                script.generation.release();
+            }
         }
-        else
-        {
+    }
+
+    private static final class CachedScript {
+        final Class<? extends Script> scriptClass;
+        final Generation generation;
+        final int weight;
+        private final Constructor<? extends Script> constructor;
+        private volatile Script script;
+
+        CachedScript(Class<? extends Script> scriptClass, Generation generation, int weight) {
+            this.scriptClass = scriptClass;
+            this.generation = generation;
+            this.weight = weight;
+            Constructor<? extends Script> constructor = null;
+            try {
+                constructor = scriptClass.getConstructor(Binding.class);
+            } catch (NoSuchMethodException e) {
+                // not a compiled script (e.g. a class extending Script); InvokerHelper knows how to make those
+            }
+            this.constructor = constructor;
+        }
+
+        Script newInstance(Binding binding) {
+            if (constructor == null) {
+                return InvokerHelper.createScript(scriptClass, binding);
+            }
+            try {
+                return constructor.newInstance(binding);
+            } catch (InvocationTargetException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+                throw new IllegalStateException("Failed to create script " + scriptClass.getName(), e.getCause());
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Failed to create script " + scriptClass.getName(), e);
+            }
+        }
+
+        Script getScript() {
+            Script script = this.script;
+            if (script == null) {
+                synchronized (this) {
+                    script = this.script;
+                    if (script == null) {
+                        script = this.script = InvokerHelper.createScript(scriptClass, new Binding());
+                    }
+                }
+            }
+            return script;
+        }
+    }
 
-            script = shell.parse(expression);
-            scripts.put(expression, script);
+    private static final class Generation {
+        final GroovyClassLoader loader;
+        final AtomicInteger live = new AtomicInteger();
+        int compiled;
+        private volatile boolean retired;
+
+        Generation(GroovyClassLoader loader) {
+            this.loader = loader;
+        }
+
+        void retire() {
+            retired = true;
+            if (live.get() == 0) {
+                unload();
+            }
+        }
+
+        void release() {
+            if (live.decrementAndGet() == 0 && retired) {
+                unload();
+            }
         }
-        return script;
+
+        private void unload() {
+            // the loader caches every class it defined; dropping those is what lets them be collected
+            loader.clearCache();
+            try {
+                loader.close();
+            } catch (IOException e) {
+                logger().log(Level.WARNING, "Failed to close the class loader of unloaded scripts", e);
+            }
+        }
+    }
+
+    private static Logger logger() {
+        Achievables achievables = Achievables.getInstance();
+        return achievables != null ? achievables.getLogger() : Logger.getGlobal();
     }
 }
@@ -0,0 +1,156 @@
+package us.mcparks.achievables.dsl;
+
+import org.junit.Before;
+import org.junit.Test;
+import us.mcparks.achievables.Achievables;
+import us.mcparks.achievables.InMemoryAchievableManager;
+import us.mcparks.achievables.dsl.meta.AchievableMeta;
+import us.mcparks.achievables.dsl.meta.MetaBuilder;
+import us.mcparks.achievables.events.Event;
+import us.mcparks.achievables.events.PlayerEvent;
+import us.mcparks.achievables.framework.AchievablePlayer;
+import us.mcparks.achievables.groovy.BigAlAchievable;
+import us.mcparks.achievables.triggers.EventAchievableTrigger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AchievementReloaderTest {
+    private InMemoryAchievableManager manager;
+    private AchievementReloader reloader;
+
+    @Before
+    public void setUp() {
+        manager = InMemoryAchievableManager.builder(AchievablePlayer::toString).eventClass(RideEvent.class).build();
+        Achievables.initialize(manager);
+        Achievables.getInstance().setAchievableMetaBuilderSupplier(Meta::new);
+        // nothing is stored unless the test flushes it
+        Achievables.getInstance().setSharedStateFlushMillis(TimeUnit.HOURS.toMillis(1));
+        reloader = AchievementReloader.builder(Achievables.getInstance().getTriggerRouter())
+                .uuids(name -> UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)))
+                .build();
+    }
+
+    @Test
+    public void reloadKeepsMergesThatArePending() throws Exception {
+        reloader.reload(Collections.singletonMap("rides", source(1000000, false)));
+        manager.initializeStaticState(loaded());
+        List<Player> players = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            players.add(join("player" + i));
+        }
+
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger sent = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(players.size());
+        for (Player player : players) {
+            pool.submit(() -> {
+                while (!stop.get()) {
+                    manager.processTrigger(new EventAchievableTrigger(new RideEvent(player)));
+                    sent.incrementAndGet();
+                }
+            });
+        }
+        for (int i = 1; i <= 20; i++) {
+            reloader.reload(Collections.singletonMap("rides", source(1000000 + i, false)));
+            Thread.sleep(5);
+        }
+        stop.set(true);
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        loaded().flushSharedState();
+        assertEquals((long) sent.get(), manager.getStaticState(loaded()).get("rides"));
+    }
+
+    @Test
+    public void replacementSeesMergesOfTheOldVersion() throws Exception {
+        Player player = join("player");
+        reloader.reload(Collections.singletonMap("rides", source(2, false)));
+        BigAlAchievable before = loaded();
+        manager.initializeStaticState(before);
+        before.process(player, new EventAchievableTrigger(new RideEvent(player)), true);
+
+        reloader.reload(Collections.singletonMap("rides", source(3, false)));
+        BigAlAchievable after = loaded();
+        manager.initializePlayerState(player, after);
+        assertFalse(after.isSatisfied(player));
+        // a handler of the old version that was still running during the reload
+        before.process(player, new EventAchievableTrigger(new RideEvent(player)), true);
+        assertFalse(after.isSatisfied(player));
+        before.process(player, new EventAchievableTrigger(new RideEvent(player)), true);
+        assertTrue(after.isSatisfied(player));
+
+        // a changed shared block can't take the live values over, so they're stored before the swap
+        reloader.reload(Collections.singletonMap("rides", source(3, true)));
+        assertEquals(3L, manager.getStaticState(loaded()).get("rides"));
+    }
+
+    private BigAlAchievable loaded() {
+        return (BigAlAchievable) reloader.getLoaded().get("rides").getAchievable();
+    }
+
+    private Player join(String name) throws Exception {
+        Player player = new Player(name);
+        manager.playerJoined(player);
+        return player;
+    }
+
+    private static String source(int goal, boolean otherKey) {
+        return "achievement {\n" +
+                "    syntaxVersion 0\n" +
+                "    state { n = 0 }\n" +
+                "    shared {\n" +
+                "        rides = counter()\n" +
+                (otherKey ? "        other = 0\n" : "") +
+                "    }\n" +
+                "    activators { shared.rides >= " + goal + " }\n" +
+                "    events { on(\"RideEvent\") { shared.rides += 1 } }\n" +
+                "}\n";
+    }
+
+    private static class Meta implements AchievableMeta, MetaBuilder<Meta> {
+        @Override
+        public Meta build() {
+            return this;
+        }
+    }
+
+    private static class Player implements AchievablePlayer {
+        private final String name;
+
+        Player(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    public static class RideEvent implements Event, PlayerEvent {
+        private final AchievablePlayer player;
+
+        RideEvent(AchievablePlayer player) {
+            this.player = player;
+        }
+
+        @Override
+        public AchievablePlayer getApplicablePlayer() {
+            return player;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package us.mcparks.achievables.persistence;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class BinaryStateCodecTest {
+    private static final UUID ACHIEVABLE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    private final BinaryStateCodec codec = new BinaryStateCodec();
+
+    @Test
+    public void wholeNumbersComeBackAsLongs() throws IOException {
+        Map<String, Object> state = new HashMap<>();
+        state.put("int", 5);
+        state.put("negative", -300);
+        state.put("min", Long.MIN_VALUE);
+        state.put("max", Long.MAX_VALUE);
+        state.put("byte", (byte) 7);
+
+        Map<String, Object> decoded = roundTrip(state);
+        assertEquals(5L, decoded.get("int"));
+        assertEquals(-300L, decoded.get("negative"));
+        assertEquals(Long.MIN_VALUE, decoded.get("min"));
+        assertEquals(Long.MAX_VALUE, decoded.get("max"));
+        assertEquals(7L, decoded.get("byte"));
+    }
+
+    @Test
+    public void otherNumbersComeBackAsDoubles() throws IOException {
+        Map<String, Object> state = new HashMap<>();
+        state.put("double", 1.5);
+        state.put("float", 0.25f);
+        state.put("nan", Double.NaN);
+        state.put("negativeZero", -0.0);
+
+        Map<String, Object> decoded = roundTrip(state);
+        assertEquals(1.5, decoded.get("double"));
+        assertEquals(0.25, decoded.get("float"));
+        assertEquals(Double.NaN, decoded.get("nan"));
+        assertEquals(-0.0, decoded.get("negativeZero"));
+    }
+
+    @Test
+    public void nestedListsAndMapsRoundTrip() throws IOException {
+        Map<String, Object> inner = new LinkedHashMap<>();
+        inner.put("ratio", 2.5);
+        inner.put("flags", Arrays.asList(true, null, "x"));
+        Map<String, Object> state = new HashMap<>();
+        state.put("nested", Arrays.asList(1, Arrays.asList(2, 3), inner));
+        state.put("empty", new ArrayList<>());
+        state.put("name", "Space Mountain");
+        state.put("unset", null);
+
+        Map<String, Object> expectedInner = new LinkedHashMap<>();
+        expectedInner.put("ratio", 2.5);
+        expectedInner.put("flags", Arrays.asList(true, null, "x"));
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("nested", Arrays.asList(1L, Arrays.asList(2L, 3L), expectedInner));
+        expected.put("empty", new ArrayList<>());
+        expected.put("name", "Space Mountain");
+        expected.put("unset", null);
+        assertEquals(expected, roundTrip(state));
+    }
+
+    @Test
+    public void otherValuesAreStoredAsJson() throws IOException {
+        Map<String, Object> state = new HashMap<>();
+        state.put("set", new LinkedHashSet<>(Arrays.asList(1, 2)));
+        state.put("uuid", ACHIEVABLE);
+
+        Map<String, Object> decoded = roundTrip(state);
+        assertEquals(Arrays.asList(1L, 2L), decoded.get("set"));
+        assertEquals(ACHIEVABLE.toString(), decoded.get("uuid"));
+    }
+
+    @Test
+    public void keysAreReportedBeforeTheyAreUsedAndCanBeDefinedAgain() throws IOException {
+        List<String> keys = new ArrayList<>();
+        codec.setKeyListener((achievable, id, key, define) -> {
+            assertEquals(keys.size(), id);
+            keys.add(key);
+            define.run();
+        });
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("rides", 3);
+        state.put("lastRide", "Splash Mountain");
+        byte[] first = codec.encode(ACHIEVABLE, state);
+        codec.encode(ACHIEVABLE, state);
+        assertEquals(Arrays.asList("rides", "lastRide"), keys);
+
+        // what a store does on startup with the keys it logged
+        BinaryStateCodec restarted = new BinaryStateCodec();
+        for (int id = 0; id < keys.size(); id++) {
+            restarted.defineKey(ACHIEVABLE, id, keys.get(id));
+        }
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("rides", 3L);
+        expected.put("lastRide", "Splash Mountain");
+        assertEquals(expected, restarted.decode(ACHIEVABLE, ByteBuffer.wrap(first)));
+    }
+
+    @Test
+    public void unknownKeysCantBeDecoded() throws IOException {
+        byte[] encoded = codec.encode(ACHIEVABLE, Collections.<String, Object>singletonMap("rides", 1));
+        try {
+            new BinaryStateCodec().decode(ACHIEVABLE, ByteBuffer.wrap(encoded));
+            fail("decoded a key that was never defined");
+        } catch (IOException expected) {
+            // the dictionary wasn't restored
+        }
+    }
+
+    private Map<String, Object> roundTrip(Map<String, Object> state) throws IOException {
+        return codec.decode(ACHIEVABLE, ByteBuffer.wrap(codec.encode(ACHIEVABLE, state)));
+    }
+}
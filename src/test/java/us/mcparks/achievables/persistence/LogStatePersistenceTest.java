@@ -0,0 +1,219 @@
+package us.mcparks.achievables.persistence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import us.mcparks.achievables.framework.StateDelta;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LogStatePersistenceTest {
+    private static final UUID RIDES = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID SHOWS = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    // every store the test opened, including ones it "crashed" by never closing them
+    private final List<LogStatePersistence> opened = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder().toPath();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (LogStatePersistence store : opened) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+
+    @Test
+    public void closedStoreIsReadBackFromItsSnapshot() throws IOException {
+        LogStatePersistence store = open(new BinaryStateCodec());
+        store.savePlayerState("player", RIDES, state("rides", 2, "lastRide", "Space Mountain"));
+        store.savePlayerStateDelta("player", RIDES, delta(state("rides", 3), "lastRide"));
+        store.saveStaticState(SHOWS, state("shows", 1.5));
+        store.saveCompletion("player", SHOWS);
+        store.close();
+
+        LogStatePersistence reopened = open(new BinaryStateCodec());
+        PersistedPlayer player = reopened.loadPlayer("player");
+        assertEquals(state("rides", 3L), player.getStates().get(RIDES));
+        assertEquals(Collections.singleton(SHOWS), player.getCompleted());
+        assertEquals(state("shows", 1.5), reopened.loadStaticState(SHOWS));
+        assertNull(reopened.loadStaticState(RIDES));
+        assertTrue(reopened.loadPlayer("nobody").getStates().isEmpty());
+    }
+
+    @Test
+    public void segmentsAfterTheSnapshotAreReplayed() throws IOException {
+        LogStatePersistence store = open(new BinaryStateCodec());
+        store.savePlayerState("player", RIDES, state("rides", 1));
+        store.snapshot();
+        // a key the snapshot's dictionary doesn't have yet
+        store.savePlayerStateDelta("player", RIDES, delta(state("rides", 2, "favorite", Arrays.asList("Splash Mountain"))));
+        store.saveCompletion("player", RIDES);
+        store.sync();
+        // never closed, as if the process died
+
+        assertEquals(1, count(".snapshot"));
+        LogStatePersistence restarted = open(new BinaryStateCodec());
+        PersistedPlayer player = restarted.loadPlayer("player");
+        assertEquals(state("rides", 2L, "favorite", Collections.singletonList("Splash Mountain")), player.getStates().get(RIDES));
+        assertTrue(player.getCompleted().contains(RIDES));
+    }
+
+    @Test
+    public void tornRecordAtTheEndIsCutOff() throws IOException {
+        LogStatePersistence store = open(new BinaryStateCodec());
+        store.savePlayerState("player", RIDES, state("rides", 1));
+        store.sync();
+        Path segment = last(".log");
+        long complete = Files.size(segment);
+        store.savePlayerState("player", RIDES, state("rides", 2));
+        store.sync();
+        // the process died partway through writing the second record
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(segment) - 3);
+        }
+
+        LogStatePersistence restarted = open(new BinaryStateCodec());
+        assertEquals(state("rides", 1L), restarted.loadPlayer("player").getStates().get(RIDES));
+        assertEquals(complete, Files.size(segment));
+
+        // the log carries on from the last complete record
+        restarted.savePlayerStateDelta("player", RIDES, delta(state("rides", 3)));
+        restarted.sync();
+        assertEquals(state("rides", 3L), open(new BinaryStateCodec()).loadPlayer("player").getStates().get(RIDES));
+    }
+
+    @Test
+    public void garbageAfterTheLastRecordIsCutOff() throws IOException {
+        LogStatePersistence store = open(new BinaryStateCodec());
+        store.saveStaticState(SHOWS, state("shows", 4));
+        store.sync();
+        Path segment = last(".log");
+        long complete = Files.size(segment);
+        Files.write(segment, new byte[]{0, 0, 0, 20, 1, 2, 3, 4, 5}, StandardOpenOption.APPEND);
+
+        LogStatePersistence restarted = open(new BinaryStateCodec());
+        assertEquals(state("shows", 4L), restarted.loadStaticState(SHOWS));
+        assertEquals(complete, Files.size(segment));
+    }
+
+    @Test
+    public void statesStayReadableAfterSwitchingCodecs() throws IOException {
+        LogStatePersistence json = open(JsonStateCodec.INSTANCE);
+        json.savePlayerState("player", RIDES, state("rides", 1, "names", Arrays.asList("a", "b")));
+        json.saveStaticState(SHOWS, state("shows", 2));
+        json.close();
+
+        // a JSON snapshot, then binary records in the log
+        LogStatePersistence binary = open(new BinaryStateCodec());
+        assertEquals(state("rides", 1L, "names", Arrays.asList("a", "b")), binary.loadPlayer("player").getStates().get(RIDES));
+        binary.savePlayerStateDelta("player", RIDES, delta(state("rides", 5)));
+        binary.sync();
+        LogStatePersistence mixed = open(new BinaryStateCodec());
+        assertEquals(state("rides", 5L, "names", Arrays.asList("a", "b")), mixed.loadPlayer("player").getStates().get(RIDES));
+        // rewrites everything in binary
+        mixed.close();
+
+        // and back to JSON, reading the binary snapshot
+        LogStatePersistence back = open(JsonStateCodec.INSTANCE);
+        assertEquals(state("rides", 5L, "names", Arrays.asList("a", "b")), back.loadPlayer("player").getStates().get(RIDES));
+        assertEquals(state("shows", 2L), back.loadStaticState(SHOWS));
+    }
+
+    @Test
+    public void snapshotDeletesTheSegmentsItCovers() throws IOException {
+        LogStatePersistence store = LogStatePersistence.builder(directory).segmentSize(256).snapshotInterval(1, TimeUnit.HOURS).build();
+        opened.add(store);
+        for (int i = 0; i < 50; i++) {
+            store.savePlayerState("player" + i, RIDES, state("rides", i));
+        }
+        assertTrue(count(".log") > 1);
+        store.snapshot();
+        assertEquals(1, count(".log"));
+        assertEquals(1, count(".snapshot"));
+        store.close();
+
+        LogStatePersistence reopened = open(new BinaryStateCodec());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(state("rides", (long) i), reopened.loadPlayer("player" + i).getStates().get(RIDES));
+        }
+        assertFalse(reopened.loadPlayer("player50").getStates().containsKey(RIDES));
+    }
+
+    private LogStatePersistence open(StateCodec codec) throws IOException {
+        LogStatePersistence store = LogStatePersistence.builder(directory).codec(codec).snapshotInterval(1, TimeUnit.HOURS).build();
+        opened.add(store);
+        return store;
+    }
+
+    private static Map<String, Object> state(Object... keysAndValues) {
+        Map<String, Object> state = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            state.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return state;
+    }
+
+    // Sets the changed keys and removes the removed ones
+    private static StateDelta delta(Map<String, Object> changed, String... removed) {
+        Set<String> keys = new HashSet<>(changed.keySet());
+        keys.addAll(Arrays.asList(removed));
+        return StateDelta.of(changed, keys);
+    }
+
+    private int count(String suffix) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + suffix)) {
+            for (Path ignored : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // The newest file with the suffix; the names sort by their number
+    private Path last(String suffix) throws IOException {
+        Path last = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + suffix)) {
+            for (Path file : files) {
+                if (last == null || file.getFileName().toString().compareTo(last.getFileName().toString()) > 0) {
+                    last = file;
+                }
+            }
+        }
+        return last;
+    }
+}